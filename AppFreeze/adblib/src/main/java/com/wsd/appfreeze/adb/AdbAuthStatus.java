@@ -0,0 +1,27 @@
+package com.wsd.appfreeze.adb;
+
+/**
+ * 本端密钥在 adbd 上的授权状态（跨连接缓存）
+ *
+ * 由 AdbConnectionManager 在每次握手后更新：签名被接受即为 AUTHORIZED，
+ * 签名被拒绝即为 UNAUTHORIZED。已知未授权时非交互连接直接失败，不再发起握手。
+ */
+public enum AdbAuthStatus {
+
+    /** 尚未与 adbd 完成过认证 */
+    UNKNOWN,
+    /** 上次认证时签名被接受（或用户已确认授权） */
+    AUTHORIZED,
+    /** 上次认证时签名被拒绝，需要用户在授权弹窗中确认 */
+    UNAUTHORIZED;
+
+    /** 从缓存的名称还原，无法识别时返回 UNKNOWN */
+    public static AdbAuthStatus fromName(String name) {
+        if (name == null) return UNKNOWN;
+        try {
+            return valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return UNKNOWN;
+        }
+    }
+}
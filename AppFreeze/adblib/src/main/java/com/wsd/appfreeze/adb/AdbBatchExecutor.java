@@ -0,0 +1,310 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 单流批量命令执行器
+ *
+ * 将一组命令拼接为一个 shell 脚本，通过一个 shell: 流执行：
+ *   cmd0 2>&1; echo <marker>0:$?; cmd1 2>&1; echo <marker>1:$?; ...
+ * 每条命令之后输出带随机前缀的结束标记及退出码，读取端边接收边按行解析，
+ * 把输出和退出码还原为逐条命令的结果。
+ *
+ * 整批命令只需一次 OPEN/CLSE 交互、远端只启动一个 shell 进程。
+ * 脚本长度超过远端单报文上限时自动拆分为多个批次。
+ * adbd 支持 shell v2 时使用 shell,v2,raw: 执行，不分配 PTY，输出按包解码后再逐行解析。
+ * 固定的命令列表可先 prepare() 得到已编码的脚本，之后每次执行直接发出；
+ * 只执行其中一部分时从已准备的脚本中选取，复用结束标记和命令片段。
+ */
+public class AdbBatchExecutor {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final AdbConnection connection;
+
+    public AdbBatchExecutor(AdbConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * 执行一组 shell 命令
+     *
+     * @param commands shell 命令（不含 "shell:" 前缀）
+     * @return 与 commands 顺序一致的执行结果
+     */
+    public List<CommandResult> execute(List<String> commands) throws InterruptedException {
+        return execute(commands, Deadline.NONE);
+    }
+
+    /**
+     * 在截止时间内执行一组 shell 命令
+     * 超时后关闭流，尚未完成的命令结果为 "Timed out"；已完成的结果照常返回
+     *
+     * @param commands shell 命令（不含 "shell:" 前缀）
+     * @param deadline 整组命令的截止时间
+     * @return 与 commands 顺序一致的执行结果
+     */
+    public List<CommandResult> execute(List<String> commands, Deadline deadline) throws InterruptedException {
+        return execute(prepare(commands), deadline);
+    }
+
+    /**
+     * 按当前连接的服务和单报文上限预先拼接脚本并编码为 OPEN 负载
+     * 结果不可变，可在多次执行之间复用；连接的服务或上限变化后需重新准备（见 Prepared.matches）。
+     *
+     * @param commands shell 命令（不含 "shell:" 前缀）
+     */
+    public Prepared prepare(List<String> commands) {
+        String marker = newMarker();
+        List<String> fragments = new ArrayList<>(commands.size());
+        for (String command : commands) fragments.add(fragmentFor(marker, command));
+        return assemble(commands, fragments, connection.getDefaultShellMode(), connection.getMaxData(), marker);
+    }
+
+    /** 把命令片段按编号拼接为脚本，超过单报文上限时拆分批次并编码 */
+    private static Prepared assemble(List<String> commands, List<String> fragments, ShellMode mode, int maxData,
+            String marker) {
+        // OPEN 报文负载不能超过远端单报文上限（含结尾的 '\0'）
+        int limit = maxData - mode.destination("").length() - 1;
+        List<Batch> batches = new ArrayList<>();
+        StringBuilder script = new StringBuilder();
+        int start = 0;
+        while (start < fragments.size()) {
+            script.setLength(0);
+            int end = start;
+            while (end < fragments.size()) {
+                String fragment = fragments.get(end);
+                String suffix = end + ":$?; ";
+                if (end > start && script.length() + fragment.length() + suffix.length() > limit) break;
+                script.append(fragment).append(suffix);
+                end++;
+            }
+            batches.add(new Batch(start, end,
+                    AdbConnection.encodeDestination(mode.destination(script.toString()))));
+            start = end;
+        }
+        return new Prepared(commands, fragments, mode, maxData, marker, batches);
+    }
+
+    /**
+     * 在截止时间内执行预先准备好的脚本
+     * 与当前连接不匹配时（重连后服务或上限变化）按当前连接重新准备
+     *
+     * @return 与准备时的命令顺序一致的执行结果
+     */
+    public List<CommandResult> execute(Prepared prepared, Deadline deadline) throws InterruptedException {
+        if (!prepared.matches(connection)) prepared = prepare(prepared.commands);
+        List<CommandResult> results = new ArrayList<>(prepared.commands.size());
+        for (Batch batch : prepared.batches) {
+            results.addAll(runBatch(prepared.commands.subList(batch.start, batch.end), batch.start,
+                    prepared.mode, prepared.marker, batch.destination, deadline));
+        }
+        return results;
+    }
+
+    /** 每次准备使用新的随机结束标记，避免与命令输出混淆 */
+    private static String newMarker() {
+        byte[] nonce = new byte[6];
+        RANDOM.nextBytes(nonce);
+        StringBuilder sb = new StringBuilder("__AF_");
+        for (byte b : nonce) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.append("__").toString();
+    }
+
+    /** 命令在脚本中的片段，拼接时在末尾加上编号和 ":$?; " */
+    private static String fragmentFor(String marker, String command) {
+        return command + " 2>&1; echo " + marker;
+    }
+
+    private List<CommandResult> runBatch(List<String> commands, int baseIndex, ShellMode mode, String marker,
+            byte[] destination, Deadline deadline) throws InterruptedException {
+        int n = commands.size();
+        long batchStart = System.nanoTime();
+
+        AdbStream stream;
+        try {
+            deadline.check("Batch");
+            stream = connection.open(destination, deadline);
+        } catch (IOException e) {
+            List<CommandResult> failed = new ArrayList<>(n);
+            for (String command : commands) {
+                failed.add(CommandResult.failed(command, System.nanoTime() - batchStart, e.getMessage()));
+            }
+            return failed;
+        }
+
+        BatchOutput batch = new BatchOutput(commands, baseIndex, marker, batchStart);
+        LineParser parser = new LineParser(batch);
+        // 脚本中每条命令的标准错误已重定向到标准输出，shell v2 只需解析标准输出
+        ShellV2Decoder decoder = mode != ShellMode.SHELL_V2 ? null : new ShellV2Decoder(new ShellV2Decoder.Sink() {
+            @Override
+            public void onStdout(byte[] data, int offset, int length) throws IOException {
+                parser.feed(data, offset, length);
+            }
+
+            @Override
+            public void onStderr(byte[] data, int offset, int length) {
+            }
+
+            @Override
+            public void onExit(int exitCode) {
+            }
+        });
+        String missing = "No result marker";
+        stream.setDeadline(deadline);
+        try {
+            while (batch.completed < n) {
+                byte[] chunk = stream.read();
+                if (decoder != null) {
+                    decoder.feed(chunk, 0, chunk.length);
+                } else {
+                    parser.feed(chunk);
+                }
+            }
+        } catch (SocketTimeoutException e) {
+            missing = "Timed out";
+        } catch (IOException e) {
+            // 流提前关闭，缺少结束标记的命令按失败处理
+        } finally {
+            try { stream.close(); } catch (IOException e) { }
+        }
+
+        CommandResult[] results = batch.results;
+        List<CommandResult> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            list.add(results[i] != null ? results[i] : CommandResult.failed(commands.get(i),
+                    System.nanoTime() - batchStart, missing));
+        }
+        return list;
+    }
+
+    /** 预先准备好的批量脚本：命令已拼接、OPEN 负载已编码，执行时不再构造字符串 */
+    public static final class Prepared {
+        private final List<String> commands;
+        /** 各命令不含编号的脚本片段，从中选取子集时直接复用 */
+        private final List<String> fragments;
+        private final ShellMode mode;
+        private final int maxData;
+        private final String marker;
+        private final List<Batch> batches;
+
+        private Prepared(List<String> commands, List<String> fragments, ShellMode mode, int maxData, String marker,
+                List<Batch> batches) {
+            this.commands = Collections.unmodifiableList(new ArrayList<>(commands));
+            this.fragments = fragments;
+            this.mode = mode;
+            this.maxData = maxData;
+            this.marker = marker;
+            this.batches = batches;
+        }
+
+        /** 是否按该连接的服务和单报文上限准备 */
+        public boolean matches(AdbConnection connection) {
+            return mode == connection.getDefaultShellMode() && maxData == connection.getMaxData();
+        }
+
+        public List<String> getCommands() {
+            return commands;
+        }
+
+        /**
+         * 按给定顺序选取部分命令，沿用本脚本的结束标记和命令片段重新拼接
+         * 不再生成随机标记或拼接命令字符串，只重新编号和编码
+         *
+         * @param indices 选取的命令在本脚本中的位置
+         */
+        Prepared select(int[] indices) {
+            List<String> selected = new ArrayList<>(indices.length);
+            List<String> selectedFragments = new ArrayList<>(indices.length);
+            for (int index : indices) {
+                selected.add(commands.get(index));
+                selectedFragments.add(fragments.get(index));
+            }
+            return assemble(selected, selectedFragments, mode, maxData, marker);
+        }
+    }
+
+    /** 一个批次：命令区间 [start, end) 及其 OPEN 负载 */
+    private static final class Batch {
+        final int start;
+        final int end;
+        final byte[] destination;
+
+        Batch(int start, int end, byte[] destination) {
+            this.start = start;
+            this.end = end;
+            this.destination = destination;
+        }
+    }
+
+    /** 逐行解析批量脚本的输出，遇到结束标记时生成对应命令的结果 */
+    private static class BatchOutput implements LineParser.Handler {
+        final CommandResult[] results;
+        int completed;
+        private final List<String> commands;
+        private final int baseIndex;
+        private final String marker;
+        private final StringBuilder output = new StringBuilder();
+        private long commandStart;
+
+        BatchOutput(List<String> commands, int baseIndex, String marker, long batchStart) {
+            this.commands = commands;
+            this.baseIndex = baseIndex;
+            this.marker = marker;
+            this.results = new CommandResult[commands.size()];
+            this.commandStart = batchStart;
+        }
+
+        @Override
+        public void onLine(CharSequence line) {
+            int pos = indexOf(line, marker);
+            if (pos < 0) {
+                output.append(line).append('\n');
+                return;
+            }
+            // 标记之前的内容属于当前命令的输出（命令输出末尾无换行时）
+            output.append(line, 0, pos);
+            int from = pos + marker.length();
+            int colon = indexOf(line, ":", from);
+            if (colon < 0) return;
+            int index = LineParser.parseInt(line, from, colon, -1) - baseIndex;
+            if (index < 0 || index >= results.length || results[index] != null) return;
+            int exitCode = LineParser.parseInt(line, colon + 1, trimEnd(line), CommandResult.EXIT_CODE_UNKNOWN);
+            long now = System.nanoTime();
+            results[index] = new CommandResult(commands.get(index), exitCode,
+                    output.toString().trim(), now - commandStart, null);
+            output.setLength(0);
+            commandStart = now;
+            completed++;
+        }
+    }
+
+    private static int indexOf(CharSequence text, String target) {
+        return indexOf(text, target, 0);
+    }
+
+    private static int indexOf(CharSequence text, String target, int from) {
+        int last = text.length() - target.length();
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < target.length(); j++) {
+                if (text.charAt(i + j) != target.charAt(j)) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static int trimEnd(CharSequence text) {
+        int end = text.length();
+        while (end > 0 && Character.isWhitespace(text.charAt(end - 1))) end--;
+        return end;
+    }
+}
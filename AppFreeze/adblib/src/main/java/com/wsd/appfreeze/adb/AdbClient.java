@@ -0,0 +1,792 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+/**
+ * ADB 客户端（纯 Java，不依赖 Android）
+ *
+ * 封装连接管理、端点发现、授权状态、force-stop 方式探测和待关闭计划的执行，
+ * 平台相关的部分通过构造参数注入：密钥加载任务、键值存储（Settings）和日志（Logger）。
+ * Android 上由 AdbShellHelper 适配 SharedPreferences 和 Log；
+ * 桌面工具和 JVM 测试可以直接创建本类连接任意 adbd。
+ *
+ * 连接由 AdbConnectionManager 管理：调用 start() 后保持长连接并自动重连，
+ * 未启动时每次操作结束即断开连接。
+ */
+public class AdbClient {
+
+    /** 交互场景下扫描的端口范围：Linux 默认的临时端口范围（adbd 以随机端口监听时位于其中） */
+    private static final int SCAN_PORT_FROM = 32768;
+    private static final int SCAN_PORT_TO = 60999;
+    /** force-stop 方式的缓存键前缀，后接设备标识 */
+    private static final String KEY_FORCE_STOP = "force_stop_command@";
+    /** 上次可用的 adbd 端口 */
+    private static final String KEY_ENDPOINT_PORT = "endpoint_port";
+    /** 本端密钥的授权状态，值为 状态@公钥指纹，指纹与当前密钥不符时视为未知 */
+    private static final String KEY_AUTH_STATUS = "auth_status";
+    /**
+     * 一轮 force-stop 的默认时间预算（含建立连接、探测和执行）
+     * 熄屏后系统很快进入休眠，超出预算的命令放弃执行，保证熄屏处理总能及时结束
+     */
+    public static final long DEFAULT_KILL_BUDGET_MS = 8_000;
+    /** 单条命令（runCommand/readLines）的默认超时 */
+    private static final long COMMAND_TIMEOUT_MS = 5_000;
+    /** 连接测试的超时，首次连接需留出用户确认授权弹窗的时间 */
+    private static final long TEST_CONNECTION_TIMEOUT_MS = 60_000;
+    /** 停止后等待多久再验证：留出系统拉起粘性服务、投递广播的时间 */
+    public static final long DEFAULT_VERIFY_DELAY_MS = 500;
+    /** 验证时仍在运行的应用依次使用的重试方式（见 KillMethod） */
+    private static final KillMethod[] RETRY_METHODS = { KillMethod.FORCE_STOP_AGAIN };
+    /** 一次轮询（快照 + 重新停止）的时间预算 */
+    private static final long SWEEP_BUDGET_MS = 3_000;
+    /** shell 找不到命令时的退出码 */
+    private static final int EXIT_COMMAND_NOT_FOUND = 127;
+
+    /** 合法包名：仅允许字母、数字、下划线和点，防止拼接命令时注入 */
+    private static final Pattern PACKAGE_NAME = Pattern.compile("[A-Za-z0-9_]+(\\.[A-Za-z0-9_]+)*");
+
+    /** 批量 force-stop 的执行方式 */
+    public enum ExecMode {
+        /** 所有命令合并为一个 shell 脚本，通过单个流执行 */
+        BATCH,
+        /** 每条命令一个流，多个流并发在途 */
+        PIPELINED
+    }
+
+    /** 持久化的键值存储（探测结果、端点、授权状态），写入可以是异步的 */
+    public interface Settings {
+        /** 没有该键时返回 null */
+        String getString(String key);
+
+        void putString(String key, String value);
+
+        void remove(String key);
+    }
+
+    /** 日志输出 */
+    public interface Logger {
+        void d(String message);
+
+        void i(String message);
+
+        void w(String message);
+
+        void e(String message);
+    }
+
+    private final String host;
+    private final String deviceId;
+    private final CompletableFuture<AdbCrypto> keys;
+    private final Settings settings;
+    private final Logger log;
+    /** 密钥就绪后创建，写入需持有 this 的锁 */
+    private volatile AdbConnectionManager connectionManager;
+    private boolean started;
+    private boolean closed;
+    private boolean interactiveAuth;
+    private volatile int pipelineWindow = AdbPipelinedExecutor.DEFAULT_WINDOW;
+    private volatile ExecMode execMode = ExecMode.BATCH;
+    private volatile ForceStopCommand forceStopCommand;
+    private volatile long killBudgetMs = DEFAULT_KILL_BUDGET_MS;
+    /** 常驻服务预先准备的 force-stop 计划，每次建立连接时按新连接预先编码 */
+    private volatile KillPlan killPlan;
+    private volatile boolean processFilter = true;
+    /** 最近一轮 force-stop 前抓取的进程快照 */
+    private volatile ProcessSnapshot lastSnapshot;
+    private volatile long verifyDelayMs = DEFAULT_VERIFY_DELAY_MS;
+    /** 最近一轮 force-stop 的逐个应用结果 */
+    private volatile KillReport lastReport;
+    /** 待机期间的重启监视器，未启用时为 null */
+    private volatile RespawnWatcher respawnWatcher;
+    /** 监视器无法工作时的兜底，随监视器一起设置和清除 */
+    private volatile Runnable respawnFallback;
+
+    /**
+     * 创建客户端，不阻塞调用线程；密钥就绪前调用的操作在各自的截止时间内等待
+     *
+     * @param host     adbd 所在主机
+     * @param deviceId 设备标识，force-stop 方式的探测结果按它缓存（Android 上为 Build.FINGERPRINT）
+     * @param keys     密钥加载任务，以 null 完成表示密钥不可用
+     * @param settings 持久化存储
+     * @param log      日志输出
+     */
+    public AdbClient(String host, String deviceId, CompletableFuture<AdbCrypto> keys,
+                     Settings settings, Logger log) {
+        this.host = host;
+        this.deviceId = deviceId;
+        this.keys = keys;
+        this.settings = settings;
+        this.log = log;
+        keys.thenAccept(crypto -> {
+            if (crypto != null) ensureConnectionManager(crypto);
+        });
+    }
+
+    /** 密钥就绪后创建连接管理器；已调用 start() 时随即启动长连接 */
+    private synchronized AdbConnectionManager ensureConnectionManager(AdbCrypto crypto) {
+        if (connectionManager != null || closed) return connectionManager;
+        AdbEndpointDiscovery discovery = new AdbEndpointDiscovery(host, AdbEndpointDiscovery.DEFAULT_PORT);
+        discovery.setScanRange(SCAN_PORT_FROM, SCAN_PORT_TO);
+        int lastPort = parsePort(settings.getString(KEY_ENDPOINT_PORT));
+        if (lastPort > 0) discovery.setLastEndpoint(new InetSocketAddress(host, lastPort));
+
+        AdbConnectionManager manager = new AdbConnectionManager(discovery, crypto);
+        manager.setListener(new AdbConnectionManager.Listener() {
+            @Override
+            public void onConnected(AdbConnection connection) {
+                log.i("已连接到 adbd (" + discovery.getPreferredEndpoint() + ")");
+                KillPlan plan = killPlan;
+                if (plan != null && !plan.isEmpty()) plan.prepareFor(connection);
+                RespawnWatcher watcher = respawnWatcher;
+                if (watcher != null) attachWatcher(watcher, connection);
+            }
+
+            @Override
+            public void onDisconnected(Exception cause, long retryDelayMs) {
+                if (retryDelayMs >= 0) {
+                    log.w("ADB 连接断开: " + cause.getMessage() + "，" + retryDelayMs + "ms 后重连");
+                }
+            }
+
+            @Override
+            public void onEndpointChanged(InetSocketAddress endpoint) {
+                settings.putString(KEY_ENDPOINT_PORT, Integer.toString(endpoint.getPort()));
+                log.i("adbd 端点: " + endpoint);
+            }
+        });
+        String fingerprint = fingerprintOf(crypto);
+        // 无法计算指纹时只在内存中记录授权状态
+        if (fingerprint != null) manager.setAuthStore(new AdbConnectionManager.AuthStore() {
+            @Override
+            public AdbAuthStatus load() {
+                String value = settings.getString(KEY_AUTH_STATUS);
+                String suffix = "@" + fingerprint;
+                if (value == null || !value.endsWith(suffix)) return AdbAuthStatus.UNKNOWN;
+                return AdbAuthStatus.fromName(value.substring(0, value.length() - suffix.length()));
+            }
+
+            @Override
+            public void save(AdbAuthStatus status) {
+                settings.putString(KEY_AUTH_STATUS, status.name() + "@" + fingerprint);
+                log.i("ADB 授权状态: " + status.name());
+            }
+        });
+        manager.setInteractiveAuth(interactiveAuth);
+        manager.setPortScan(interactiveAuth);
+        connectionManager = manager;
+        if (started) manager.start();
+        return manager;
+    }
+
+    private String fingerprintOf(AdbCrypto crypto) {
+        try {
+            return crypto.getFingerprint();
+        } catch (NoSuchAlgorithmException e) {
+            log.w("无法计算公钥指纹: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static int parsePort(String value) {
+        if (value == null) return 0;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 设置是否允许交互授权（默认不允许）
+     * 只有用户能看到设备上的授权弹窗时才应允许；
+     * 不允许时签名被拒绝立即失败，已知未授权时直接失败，不会挂起到超时。
+     * 允许时 adbd 不在已知端口上还会扫描临时端口范围（耗时约一秒），找到的端口记住供后台使用。
+     */
+    public synchronized void setInteractiveAuth(boolean interactive) {
+        this.interactiveAuth = interactive;
+        if (connectionManager != null) {
+            connectionManager.setInteractiveAuth(interactive);
+            connectionManager.setPortScan(interactive);
+        }
+    }
+
+    /** 缓存的授权状态（密钥尚未就绪时返回 UNKNOWN） */
+    public AdbAuthStatus getAuthStatus() {
+        AdbConnectionManager manager = connectionManager;
+        return manager != null ? manager.getAuthStatus() : AdbAuthStatus.UNKNOWN;
+    }
+
+    /**
+     * 在截止时间内等待密钥就绪并返回连接管理器
+     *
+     * @return 连接管理器，密钥初始化失败时返回 null
+     * @throws SocketTimeoutException 截止时间前密钥仍未就绪
+     */
+    private AdbConnectionManager awaitConnectionManager(Deadline deadline)
+            throws IOException, InterruptedException {
+        AdbConnectionManager manager = connectionManager;
+        if (manager != null) return manager;
+        AdbCrypto crypto;
+        try {
+            long remaining = deadline.remainingMillis();
+            crypto = remaining == Long.MAX_VALUE ? keys.get() : keys.get(remaining, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new SocketTimeoutException("ADB key generation timed out");
+        } catch (ExecutionException e) {
+            return null;
+        }
+        if (crypto == null) return null;
+        manager = ensureConnectionManager(crypto);
+        if (manager == null) throw new IOException("Client closed");
+        return manager;
+    }
+
+    /**
+     * 启动 ADB 长连接
+     * 后台建立连接并定期保活，adbd 重启后自动重连；密钥尚未就绪时在就绪后启动。
+     */
+    public synchronized void start() {
+        started = true;
+        if (connectionManager != null) connectionManager.start();
+    }
+
+    /**
+     * 关闭 ADB 连接并停止保活
+     */
+    public synchronized void close() {
+        closed = true;
+        stopRespawnWatcher();
+        if (connectionManager != null) connectionManager.close();
+    }
+
+    /**
+     * 设置批量 force-stop 的执行方式
+     */
+    public void setExecMode(ExecMode mode) {
+        this.execMode = mode;
+    }
+
+    /**
+     * 设置流水线窗口（同时在途的 force-stop 流数量），1 表示逐条串行执行
+     */
+    public void setPipelineWindow(int window) {
+        this.pipelineWindow = Math.max(1, window);
+    }
+
+    /**
+     * 设置一轮 force-stop 的时间预算，0 表示不限时
+     */
+    public void setKillBudget(long budgetMs) {
+        this.killBudgetMs = Math.max(0, budgetMs);
+    }
+
+    /**
+     * 设置是否先抓取进程快照、只停止正在运行的应用并按资源占用排序（默认开启）
+     * 多一次 ps 往返，换来不对已停止的应用逐个发命令；快照失败时按完整列表执行。
+     */
+    public void setProcessFilter(boolean enabled) {
+        this.processFilter = enabled;
+    }
+
+    /** 最近一轮 force-stop 前抓取的进程快照，未抓取或抓取失败时返回 null */
+    public ProcessSnapshot getLastSnapshot() {
+        return lastSnapshot;
+    }
+
+    /**
+     * 设置停止后验证的等待时间，小于 0 表示不验证（默认 DEFAULT_VERIFY_DELAY_MS）
+     * 验证时重新抓取进程快照，仍在运行的应用按 RETRY_METHODS 重试；
+     * 全部停止时只多一次往返，时间预算内未完成的验证按命令结果判断。
+     */
+    public void setVerifyDelay(long delayMs) {
+        this.verifyDelayMs = delayMs;
+    }
+
+    /** 最近一轮 force-stop 的逐个应用结果，连接失败时返回 null */
+    public KillReport getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * 获取已缓存的 force-stop 命令，不进行探测
+     * 依次查找内存缓存和按设备标识持久化的缓存，都没有时返回 null。
+     */
+    private ForceStopCommand cachedForceStopCommand() {
+        ForceStopCommand command = forceStopCommand;
+        if (command != null) return command;
+
+        command = ForceStopCommand.fromName(settings.getString(KEY_FORCE_STOP + deviceId));
+        if (command != null) forceStopCommand = command;
+        return command;
+    }
+
+    /**
+     * 获取本设备适用的 force-stop 命令
+     * 没有缓存时通过 ADB 探测一次，结果按设备标识持久化。
+     */
+    private ForceStopCommand resolveForceStopCommand(AdbConnection connection, Deadline deadline) {
+        ForceStopCommand command = cachedForceStopCommand();
+        if (command != null) return command;
+
+        try {
+            command = ForceStopCommand.probe(connection, deadline);
+            settings.putString(KEY_FORCE_STOP + deviceId, command.name());
+            log.i("force-stop 方式探测结果: " + command.name());
+        } catch (Exception e) {
+            // 探测失败不缓存，本次使用兼容方案
+            log.w("force-stop 方式探测失败: " + e.getMessage());
+            return ForceStopCommand.AM;
+        }
+        forceStopCommand = command;
+        return command;
+    }
+
+    /** 清除 force-stop 方式缓存，下次使用时重新探测 */
+    private void invalidateForceStopCommand() {
+        forceStopCommand = null;
+        settings.remove(KEY_FORCE_STOP + deviceId);
+    }
+
+    /** 未启动长连接时，操作结束后立即断开 */
+    private static void releaseConnection(AdbConnectionManager manager) {
+        if (manager != null && !manager.isStarted()) manager.disconnect();
+    }
+
+    /**
+     * 预先准备 force-stop 计划（在启动和配置变化时调用）
+     * 校验包名、拼接命令，已有热连接时同时编码批量脚本；之后建立的连接在握手完成时编码。
+     * 执行时取 getKillPlan() 交给 forceStopApps(KillPlan)，热路径上不再读取配置或构造字符串。
+     *
+     * @param packageNames 待停止的应用包名集合
+     * @return 准备好的计划
+     */
+    public KillPlan prepareKillPlan(Set<String> packageNames) {
+        KillPlan plan = buildKillPlan(packageNames);
+        killPlan = plan;
+        AdbConnectionManager manager = connectionManager;
+        AdbConnection connection = manager != null ? manager.peekConnection() : null;
+        if (connection != null && !plan.isEmpty()) plan.prepareFor(connection);
+        return plan;
+    }
+
+    /** 当前预先准备的计划，未准备时返回 null */
+    public KillPlan getKillPlan() {
+        return killPlan;
+    }
+
+    /** 校验包名并按已缓存的 force-stop 方式生成计划（尚未探测时先按兼容方案，执行时修正） */
+    private KillPlan buildKillPlan(Set<String> packageNames) {
+        List<String> packages = new ArrayList<>(packageNames.size());
+        for (String packageName : packageNames) {
+            if (!PACKAGE_NAME.matcher(packageName).matches()) {
+                log.w("忽略非法包名: " + packageName);
+                continue;
+            }
+            packages.add(packageName);
+        }
+        ForceStopCommand command = cachedForceStopCommand();
+        return new KillPlan(packages, command != null ? command : ForceStopCommand.AM);
+    }
+
+    /**
+     * 通过 ADB shell 批量强制停止应用
+     *
+     * @param packageNames 待停止的应用包名集合
+     * @return 成功停止（或本来就未运行）的应用数量
+     */
+    public int forceStopApps(Set<String> packageNames) {
+        return forceStopApps(buildKillPlan(packageNames));
+    }
+
+    /**
+     * 按计划批量强制停止应用
+     * 开启进程过滤时先抓取进程快照，只对正在运行的应用发出命令，
+     * 并按内存、CPU 和网络活动的综合权重从高到低依次停止；之后验证并重试仍在运行的应用，
+     * 逐个应用的结果见 getLastReport()。
+     *
+     * @param plan prepareKillPlan() 生成的计划
+     * @return 成功停止（或本来就未运行）的应用数量
+     */
+    public int forceStopApps(KillPlan plan) {
+        if (plan.isEmpty()) return 0;
+
+        AdbConnectionManager manager = null;
+        AdbConnection connection = null;
+        int count = 0;
+        Deadline deadline = Deadline.after(killBudgetMs);
+        KillReport.Builder report = new KillReport.Builder();
+        lastReport = null;
+
+        try {
+            manager = awaitConnectionManager(deadline);
+            if (manager == null) {
+                log.e("ADB 密钥未初始化");
+                return 0;
+            }
+            // 复用已认证的长连接，只需打开流
+            connection = manager.getConnection(deadline);
+
+            ForceStopCommand forceStop = resolveForceStopCommand(connection, deadline);
+            if (forceStop != plan.getForceStopCommand()) {
+                // 首次探测或缓存失效后方式有变，重建计划并替换预先准备的计划
+                KillPlan updated = plan.withForceStopCommand(forceStop);
+                if (killPlan == plan) killPlan = updated;
+                plan = updated;
+            }
+            int skipped = 0;
+            ProcessSnapshot snapshot = processFilter ? captureSnapshot(connection, deadline) : null;
+            lastSnapshot = snapshot;
+            if (snapshot != null) {
+                KillPlan running = plan.retainRunning(snapshot);
+                // 未运行的应用无需处理，计入成功数量
+                for (String packageName : plan.getPackages()) {
+                    if (!snapshot.isRunning(packageName)) report.notRunning(packageName);
+                }
+                skipped = plan.size() - running.size();
+                count = skipped;
+                log.i("待关闭应用中 " + running.size() + " / " + plan.size() + " 个正在运行（共 "
+                        + snapshot.size() + " 个应用在运行）");
+                plan = running;
+                if (plan.isEmpty()) {
+                    lastReport = report.build(true);
+                    return count;
+                }
+                log.d("停止顺序（按资源占用）: " + plan.getPackages());
+            }
+            List<String> packages = plan.getPackages();
+
+            List<CommandResult> results;
+            if (execMode == ExecMode.BATCH) {
+                // 单个 shell 流执行整个列表，按结束标记拆分结果
+                results = new AdbBatchExecutor(connection).execute(plan.prepareFor(connection), deadline);
+            } else {
+                // 流水线执行，按完成顺序收集结果
+                results = new AdbPipelinedExecutor(connection, pipelineWindow).execute(plan.getCommands(), deadline);
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                String packageName = packages.get(i);
+                CommandResult result = results.get(i);
+                report.sent(packageName, KillMethod.FORCE_STOP, result);
+                if (result.isSuccess()) {
+                    count++;
+                    if (!result.getOutput().isEmpty()) {
+                        log.d("命令输出 [" + packageName + "]: " + result.getOutput());
+                    }
+                    log.i("已强制停止: " + packageName + " (" + result.getElapsedMillis() + "ms)");
+                } else {
+                    // shell v2 下错误信息在标准错误中，旧版 shell 混在输出里
+                    String reason = result.getError() != null ? result.getError()
+                            : "exit " + result.getExitCode() + " " + (result.getErrorOutput().isEmpty()
+                                    ? result.getOutput() : result.getErrorOutput());
+                    log.w("强制停止失败: " + packageName + " - " + reason);
+                }
+            }
+            if (!connection.isConnected()) {
+                manager.invalidate(connection);
+            }
+            if (forceStop == ForceStopCommand.CMD && count == skipped && !results.isEmpty()
+                    && results.get(0).getExitCode() == EXIT_COMMAND_NOT_FOUND) {
+                // 缓存的探测结果已失效（cmd 不可用），下次重新探测
+                invalidateForceStopCommand();
+            }
+
+            boolean verified = verifyDelayMs >= 0 && connection.isConnected()
+                    && verify(connection, packages, forceStop, snapshot, report, deadline);
+            KillReport result = report.build(verified);
+            lastReport = result;
+            count = result.getHandledCount();
+            for (KillReport.Outcome outcome : result.getOutcomes()) {
+                if (outcome.getStatus() != KillReport.Status.NOT_RUNNING) log.d("结果: " + outcome);
+            }
+            if (verified) {
+                log.i("验证完成: 已停止 " + result.count(KillReport.Status.STOPPED) + "，仍在运行 "
+                        + (result.count(KillReport.Status.SURVIVED) + result.count(KillReport.Status.RESPAWNED))
+                        + " (" + result.getElapsedMillis() + "ms)");
+            }
+
+        } catch (AdbUnauthorizedException e) {
+            log.e("ADB 未授权本应用，请打开 AppFreeze 并在电视弹出的授权对话框中确认");
+        } catch (Exception e) {
+            log.e("ADB 连接失败: " + e.getMessage()
+                    + "（请确保电视已开启无线调试，且已授权本应用的 ADB 连接）");
+        } finally {
+            releaseConnection(manager);
+        }
+
+        return count;
+    }
+
+    /**
+     * 停止后验证：等待 verifyDelayMs 后重新抓取快照，仍在运行的应用按 RETRY_METHODS 依次重试后再次验证
+     * 全部停止时只多一次往返（一次快照）；重试的应用很少，统一用一个批量脚本发出。
+     *
+     * @param before 停止前的快照，用于判断仍在运行的进程是否是新拉起的，没有时为 null
+     * @return 验证是否完成，快照失败或时间预算用尽时返回 false
+     */
+    private boolean verify(AdbConnection connection, List<String> targets, ForceStopCommand forceStop,
+                           ProcessSnapshot before, KillReport.Builder report, Deadline deadline)
+            throws InterruptedException {
+        List<String> survivors = targets;
+        for (int round = 0; ; round++) {
+            long remaining = deadline.remainingMillis();
+            if (remaining <= verifyDelayMs) return false;
+            Thread.sleep(verifyDelayMs);
+            ProcessSnapshot after = captureSnapshot(connection, deadline);
+            if (after == null) return false;
+
+            List<String> running = new ArrayList<>();
+            for (String packageName : survivors) {
+                if (after.isRunning(packageName)) {
+                    running.add(packageName);
+                } else {
+                    report.stopped(packageName);
+                }
+            }
+            if (running.isEmpty()) return true;
+            if (round == RETRY_METHODS.length) {
+                for (String packageName : running) {
+                    boolean respawned = isRespawned(before, after, packageName);
+                    report.survived(packageName, respawned);
+                    log.w((respawned ? "停止后被重新拉起: " : "无法停止: ") + packageName);
+                }
+                return true;
+            }
+
+            KillMethod method = RETRY_METHODS[round];
+            List<String> commands = new ArrayList<>(running.size());
+            for (String packageName : running) commands.add(method.command(forceStop, packageName));
+            log.i(running.size() + " 个应用仍在运行，使用 " + method.name() + " 重试: " + running);
+            List<CommandResult> results = new AdbBatchExecutor(connection).execute(commands, deadline);
+            for (int i = 0; i < results.size(); i++) report.sent(running.get(i), method, results.get(i));
+            survivors = running;
+        }
+    }
+
+    /** 停止后仍在运行的进程号全部不在停止前的快照中，说明是被系统重新拉起的 */
+    private static boolean isRespawned(ProcessSnapshot before, ProcessSnapshot after, String packageName) {
+        ProcessSnapshot.App previous = before != null ? before.get(packageName) : null;
+        ProcessSnapshot.App current = after.get(packageName);
+        if (previous == null || current == null) return false;
+        for (int pid : current.getPids()) {
+            for (int old : previous.getPids()) {
+                if (pid == old) return false;
+            }
+        }
+        return true;
+    }
+
+    /** 抓取进程快照，失败时返回 null（调用方按完整列表执行） */
+    private ProcessSnapshot captureSnapshot(AdbConnection connection, Deadline deadline) {
+        try {
+            return ProcessSnapshot.capture(connection, deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            log.w("进程快照失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 开始监视预先准备的计划中的应用是否被重新拉起（待机时调用，需已调用 start()）
+     * 在长连接上保持一条 logcat 流，应用进程一启动就立即重新停止；连接重建后自动重新打开。
+     * 打开流失败或 logcat 刚打开就退出（事件日志不可用）时调用 fallback，
+     * 调用方据此改用 sweepRespawned() 轮询；fallback 可能在连接读线程上执行，不应阻塞。
+     *
+     * @param fallback 监视器无法工作时的兜底，同一次监视中可能被调用多次
+     * @return 是否已开始监视（没有预先准备的计划时返回 false）
+     */
+    public boolean startRespawnWatcher(Runnable fallback) {
+        KillPlan plan = killPlan;
+        if (plan == null || plan.isEmpty()) return false;
+        RespawnWatcher watcher = new RespawnWatcher(plan.getPackages(), plan.getForceStopCommand(),
+                new RespawnWatcher.Listener() {
+                    @Override
+                    public void onRestopped(String packageName, int pid, CommandResult result) {
+                        if (result.isSuccess()) {
+                            log.i("已重新停止被拉起的应用: " + packageName + " (pid " + pid + ", "
+                                    + result.getElapsedMillis() + "ms)");
+                        } else {
+                            log.w("重新停止失败: " + packageName + " - " + result.getError());
+                        }
+                    }
+
+                    @Override
+                    public void onUnavailable() {
+                        log.w("logcat 流打开后立即关闭，事件日志不可用");
+                        fallback.run();
+                    }
+                });
+        RespawnWatcher old = respawnWatcher;
+        respawnFallback = fallback;
+        respawnWatcher = watcher;
+        if (old != null) old.stop();
+
+        AdbConnectionManager manager = connectionManager;
+        AdbConnection connection = manager != null ? manager.peekConnection() : null;
+        // 尚未连接时在 onConnected 中打开
+        if (connection != null) attachWatcher(watcher, connection);
+        return true;
+    }
+
+    /** 停止重启监视（亮屏时调用） */
+    public void stopRespawnWatcher() {
+        RespawnWatcher watcher = respawnWatcher;
+        respawnWatcher = null;
+        respawnFallback = null;
+        if (watcher != null) watcher.stop();
+    }
+
+    /**
+     * 轮询一次：抓取进程快照，重新停止预先准备的计划中正在运行的应用（待机期间定时调用）
+     * 用于事件日志不可用的设备，只使用已建立的长连接，不为轮询建立连接；
+     * 没有发现时只有一次 ps 往返。
+     *
+     * @return 发现正在运行（已重新停止）的应用数量，没有可用连接或快照失败时返回 -1
+     */
+    public int sweepRespawned() {
+        KillPlan plan = killPlan;
+        if (plan == null || plan.isEmpty()) return 0;
+        AdbConnectionManager manager = connectionManager;
+        AdbConnection connection = manager != null ? manager.peekConnection() : null;
+        if (connection == null) return -1;
+
+        Deadline deadline = Deadline.after(SWEEP_BUDGET_MS);
+        ProcessSnapshot snapshot = captureSnapshot(connection, deadline);
+        if (snapshot == null) return -1;
+        KillPlan running = plan.retainRunning(snapshot);
+        if (running.isEmpty()) return 0;
+
+        try {
+            List<CommandResult> results = new AdbBatchExecutor(connection)
+                    .execute(running.prepareFor(connection), deadline);
+            List<String> packages = running.getPackages();
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i).isSuccess()) {
+                    log.i("轮询发现并重新停止: " + packages.get(i));
+                } else {
+                    log.w("轮询重新停止失败: " + packages.get(i) + " - " + results.get(i).getError());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return running.size();
+    }
+
+    private void attachWatcher(RespawnWatcher watcher, AdbConnection connection) {
+        try {
+            watcher.attach(connection);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.w("打开重启监视流失败: " + e.getMessage());
+            Runnable fallback = respawnFallback;
+            if (fallback != null && watcher == respawnWatcher) fallback.run();
+        }
+    }
+
+    /**
+     * 执行需要判断成败的命令
+     * 自动选择服务：支持 shell v2 时可取得退出码和标准错误，否则回退到旧版 shell
+     */
+    public CommandResult runCommand(String command) {
+        Deadline deadline = Deadline.after(COMMAND_TIMEOUT_MS);
+        AdbConnectionManager manager = null;
+        try {
+            manager = awaitConnectionManager(deadline);
+            if (manager == null) return CommandResult.failed(command, 0, "ADB key not initialized");
+            AdbConnection connection = manager.getConnection(deadline);
+            CompletableFuture<CommandResult> future = connection.execute(command,
+                    connection.chooseShellMode(true));
+            try {
+                return future.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(false);
+                return CommandResult.failed(command, COMMAND_TIMEOUT_MS * 1_000_000L, "Timed out");
+            }
+        } catch (Exception e) {
+            return CommandResult.failed(command, 0, e.getMessage());
+        } finally {
+            releaseConnection(manager);
+        }
+    }
+
+    /**
+     * 执行只需要解析输出的命令（如 ps、dumpsys），逐行回调
+     * 自动选择 exec: 服务：不分配 PTY、原样回传字节，边接收边解析，不缓存完整输出
+     *
+     * @return true 表示输出已完整读完
+     */
+    public boolean readLines(String command, LineParser.Handler handler) {
+        Deadline deadline = Deadline.after(COMMAND_TIMEOUT_MS);
+        AdbConnectionManager manager = null;
+        try {
+            manager = awaitConnectionManager(deadline);
+            if (manager == null) return false;
+            AdbConnection connection = manager.getConnection(deadline);
+            AdbStream stream = connection.open(connection.chooseShellMode(false).destination(command), deadline);
+            try {
+                stream.setDeadline(deadline);
+                new LineParser(handler).parse(stream.getInputStream());
+            } finally {
+                try { stream.close(); } catch (IOException e) { }
+            }
+            return stream.isClosedByRemote();
+        } catch (Exception e) {
+            log.w("命令执行失败: " + command + " - " + e.getMessage());
+            return false;
+        } finally {
+            releaseConnection(manager);
+        }
+    }
+
+    /**
+     * 测试 ADB 连接是否可用
+     *
+     * @return true 表示可以成功连接并执行命令
+     */
+    public boolean testConnection() {
+        Deadline deadline = Deadline.after(TEST_CONNECTION_TIMEOUT_MS);
+        AdbConnectionManager manager = null;
+        try {
+            manager = awaitConnectionManager(deadline);
+            if (manager == null) return false;
+            AdbConnection connection = manager.getConnection(deadline);
+
+            // 执行一个简单的测试命令
+            AdbStream stream = connection.open("shell:echo adb_ok", deadline);
+            stream.setDeadline(deadline);
+            StringBuilder output = new StringBuilder();
+            try {
+                new LineParser(line -> output.append(line).append('\n')).parse(stream.getInputStream());
+            } finally {
+                try { stream.close(); } catch (IOException e) { }
+            }
+            if (output.length() > 0) {
+                log.i("ADB 连接测试成功: " + output.toString().trim());
+                return output.indexOf("adb_ok") >= 0;
+            }
+            // 流关闭也算成功
+            return true;
+        } catch (Exception e) {
+            log.w("ADB 连接测试失败: " + e.getMessage());
+            return false;
+        } finally {
+            releaseConnection(manager);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * ADB 报文编解码（无分配版本）
+ *
+ * 编码：只把 24 字节报文头写入调用方复用的缓冲区，负载不拷贝，
+ * 由传输层以聚集写（gathering write）与报文头一起发送。
+ * 解码：报文头和负载读入复用的 AdbMessage 及其负载数组，
+ * 接收方只能在回调期间使用，需要保留时自行拷贝。
+ */
+final class AdbCodec {
+
+    private AdbCodec() {
+    }
+
+    /**
+     * 把报文头编码到 dst 当前位置（dst 须为小端序，剩余空间不少于 24 字节）
+     *
+     * @param checksum 是否计算负载校验和，为 false 时校验和字段填 0
+     */
+    static void encodeHeader(ByteBuffer dst, int cmd, int arg0, int arg1,
+                             byte[] payload, int offset, int length, boolean checksum) {
+        dst.putInt(cmd);
+        dst.putInt(arg0);
+        dst.putInt(arg1);
+        dst.putInt(length);
+        dst.putInt(checksum && length > 0 ? checksum(payload, offset, length) : 0);
+        dst.putInt(cmd ^ 0xFFFFFFFF);
+    }
+
+    /** 从 src 当前位置解码报文头到 msg（src 须为小端序） */
+    static void decodeHeader(ByteBuffer src, AdbProtocol.AdbMessage msg) {
+        msg.command = src.getInt();
+        msg.arg0 = src.getInt();
+        msg.arg1 = src.getInt();
+        msg.payloadLength = src.getInt();
+        msg.checksum = src.getInt();
+        msg.magic = src.getInt();
+    }
+
+    /**
+     * 负载校验和：所有字节按无符号值求和
+     * 每次累加 8 个字节、无分支，比逐字节判断符号快得多
+     */
+    static int checksum(byte[] data, int offset, int length) {
+        int sum = 0;
+        int i = offset;
+        int end = offset + length;
+        int unrolledEnd = end - 7;
+        for (; i < unrolledEnd; i += 8) {
+            sum += (data[i] & 0xFF) + (data[i + 1] & 0xFF) + (data[i + 2] & 0xFF) + (data[i + 3] & 0xFF)
+                    + (data[i + 4] & 0xFF) + (data[i + 5] & 0xFF) + (data[i + 6] & 0xFF) + (data[i + 7] & 0xFF);
+        }
+        for (; i < end; i++) {
+            sum += data[i] & 0xFF;
+        }
+        return sum;
+    }
+
+    /**
+     * 从阻塞输入流读取一个报文到复用的 msg
+     *
+     * @param header 复用的 24 字节小端序报文头缓冲区（须为堆缓冲区）
+     */
+    static void readMessage(InputStream in, ByteBuffer header, AdbProtocol.AdbMessage msg) throws IOException {
+        readFully(in, header.array(), AdbProtocol.ADB_HEADER_LENGTH);
+        header.clear();
+        decodeHeader(header, msg);
+        if (msg.payloadLength < 0 || msg.payloadLength > AdbProtocol.CONNECT_MAXDATA) {
+            throw new IOException("Invalid payload length: " + msg.payloadLength);
+        }
+        if (msg.payloadLength != 0) {
+            if (msg.payload == null || msg.payload.length < msg.payloadLength) {
+                msg.payload = new byte[AdbProtocol.CONNECT_MAXDATA];
+            }
+            readFully(in, msg.payload, msg.payloadLength);
+        }
+    }
+
+    private static void readFully(InputStream in, byte[] buf, int length) throws IOException {
+        int dataRead = 0;
+        while (dataRead < length) {
+            int bytesRead = in.read(buf, dataRead, length - dataRead);
+            if (bytesRead < 0) throw new IOException("Stream closed");
+            dataRead += bytesRead;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 异步执行一条命令的 Future
+ *
+ * 作为流的 Listener 在连接读线程上收集输出，远端关闭流时完成，
+ * 不占用调用方线程。取消 Future 会关闭对应的流（远端命令随之结束）。
+ * 打开失败、连接断开等情况以失败的 CommandResult 正常完成，而不是异常完成。
+ * shell v2 流经 ShellV2Decoder 拆分为标准输出、标准错误和退出码。
+ */
+final class AdbCommandFuture extends CompletableFuture<CommandResult>
+        implements AdbStream.Listener, ShellV2Decoder.Sink {
+
+    private final String command;
+    private final long startNanos = System.nanoTime();
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream errorOutput = new ByteArrayOutputStream();
+    /** shell v2 解码器，其他服务为 null */
+    private final ShellV2Decoder decoder;
+    private int exitCode = CommandResult.EXIT_CODE_UNKNOWN;
+    private volatile AdbStream stream;
+
+    AdbCommandFuture(String command, ShellMode mode) {
+        this.command = command;
+        this.decoder = mode == ShellMode.SHELL_V2 ? new ShellV2Decoder(this) : null;
+    }
+
+    /** beginOpen 返回后关联流，期间已被取消则立即关闭 */
+    void attach(AdbStream stream) {
+        this.stream = stream;
+        if (isCancelled()) closeQuietly(stream);
+    }
+
+    /** OPEN 未能发出 */
+    void fail(String error) {
+        complete(CommandResult.failed(command, System.nanoTime() - startNanos, error));
+    }
+
+    @Override
+    public void onData(AdbStream stream) {
+        if (!isDone()) drain(stream);
+    }
+
+    @Override
+    public void onClose(AdbStream stream) {
+        // 已取消时由取消方关闭流，不再读取（读取方只能有一个）
+        if (isDone()) return;
+        drain(stream);
+        long elapsed = System.nanoTime() - startNanos;
+        if (!stream.isOpened()) {
+            complete(CommandResult.failed(command, elapsed, "Stream open rejected by remote peer"));
+        } else if (!stream.isClosedByRemote()) {
+            complete(CommandResult.failed(command, elapsed, "Connection lost"));
+        } else {
+            complete(new CommandResult(command, exitCode, toText(output), toText(errorOutput), elapsed, null));
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        AdbStream s = stream;
+        if (cancelled && s != null) closeQuietly(s);
+        return cancelled;
+    }
+
+    /** 在读线程上取走已到达的数据（读线程是该流唯一的读取方） */
+    private void drain(AdbStream stream) {
+        try {
+            byte[] chunk;
+            while ((chunk = stream.poll()) != null) {
+                if (decoder != null) {
+                    decoder.feed(chunk, 0, chunk.length);
+                } else {
+                    output.write(chunk, 0, chunk.length);
+                }
+            }
+        } catch (IOException e) {
+            // 回复 OKAY 失败说明连接已断开，随后会收到关闭事件；
+            // shell v2 包格式错误时结果保持已收到的部分
+        }
+    }
+
+    @Override
+    public void onStdout(byte[] data, int offset, int length) {
+        output.write(data, offset, length);
+    }
+
+    @Override
+    public void onStderr(byte[] data, int offset, int length) {
+        errorOutput.write(data, offset, length);
+    }
+
+    @Override
+    public void onExit(int exitCode) {
+        this.exitCode = exitCode;
+    }
+
+    private static String toText(ByteArrayOutputStream buffer) {
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8).trim();
+    }
+
+    private static void closeQuietly(AdbStream stream) {
+        try { stream.close(); } catch (IOException ignored) { }
+    }
+}
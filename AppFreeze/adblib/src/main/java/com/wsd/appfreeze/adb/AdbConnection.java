@@ -0,0 +1,421 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * ADB 连接管理
+ * 实现与 adbd 守护进程的通信，包括认证和流管理
+ * 底层收发由 AdbTransport 完成：NIO 事件循环（AdbNioTransport）或阻塞 socket（AdbSocketTransport）
+ * 基于 cgutman/AdbLib 开源库（Apache 2.0 许可证）
+ */
+public class AdbConnection implements Closeable {
+
+    /** 认证状态机 */
+    public enum AuthState {
+        /** 已发出 CNXN，等待 adbd 回复 */
+        HANDSHAKE,
+        /** 已用私钥签名令牌，等待 adbd 接受 */
+        SIGNATURE_SENT,
+        /** 签名被拒绝，已发送公钥，等待用户在电视上确认授权弹窗 */
+        AWAITING_USER,
+        /** 认证完成（收到 CNXN） */
+        AUTHORIZED,
+        /** 签名被拒绝且不允许交互授权，连接失败 */
+        UNAUTHORIZED
+    }
+
+    private AdbTransport transport;
+    private AdbOutboundQueue outbound;
+    private volatile boolean connectAttempted;
+    /** 传输层已关闭，连接不可再用 */
+    private volatile boolean closed;
+    private volatile boolean connected;
+    private volatile int maxData;
+    private volatile int protocolVersion = AdbProtocol.VERSION_MIN;
+    private volatile Set<String> features = Collections.emptySet();
+    private AdbCrypto crypto;
+    private volatile AuthState authState = AuthState.HANDSHAKE;
+    /** 签名被拒绝时是否发送公钥并等待用户确认（否则立即失败） */
+    private volatile boolean interactiveAuth = true;
+    private final AdbStreamTable streams = new AdbStreamTable();
+    private volatile Runnable disconnectListener;
+
+    private AdbConnection() {
+    }
+
+    /** 基于阻塞 socket 创建 ADB 连接 */
+    public static AdbConnection create(Socket socket, AdbCrypto crypto) throws IOException {
+        return create(new AdbSocketTransport(socket), crypto);
+    }
+
+    /** 基于指定传输层创建 ADB 连接 */
+    public static AdbConnection create(AdbTransport transport, AdbCrypto crypto) {
+        AdbConnection newConn = new AdbConnection();
+        newConn.crypto = crypto;
+        newConn.transport = transport;
+        newConn.outbound = new AdbOutboundQueue(transport);
+        return newConn;
+    }
+
+    /** 传输层回调：在读线程或事件循环线程上依次处理收到的报文 */
+    private final AdbTransport.Receiver receiver = new AdbTransport.Receiver() {
+        @Override
+        public void onMessage(AdbProtocol.AdbMessage msg) throws IOException {
+            handleMessage(msg);
+        }
+
+        @Override
+        public void onClosed() {
+            handleClosed();
+        }
+    };
+
+    private void handleMessage(AdbProtocol.AdbMessage msg) throws IOException {
+        // 收到 CNXN 之前无法得知远端版本；新版 adbd 在收到本端 CNXN 后即不再填写校验和，
+        // 因此握手阶段只校验魔数，协商为旧版协议后再校验负载
+        if (!AdbProtocol.validateMessage(msg, connected && isChecksumRequired())) return;
+
+        switch (msg.command) {
+            case AdbProtocol.CMD_OKAY:
+            case AdbProtocol.CMD_WRTE:
+            case AdbProtocol.CMD_CLSE:
+                if (!connected) return;
+                AdbStream waitingStream = streams.get(msg.arg1);
+                if (waitingStream == null) return;
+                // 流的回调（onData/onClose）在流的锁之外调用，回调中可以加锁或关闭流，不会与持有监听方锁再关闭流的线程死锁
+                if (msg.command == AdbProtocol.CMD_OKAY) {
+                    boolean abandoned;
+                    synchronized (waitingStream) {
+                        abandoned = waitingStream.isClosed() && !waitingStream.isOpened();
+                        waitingStream.updateRemoteId(msg.arg0);
+                        waitingStream.readyForWrite();
+                        waitingStream.notifyAll();
+                    }
+                    if (abandoned) {
+                        // 本端等待打开超时已放弃该流，远端迟到的 OKAY 需回复 CLSE 释放远端资源
+                        streams.remove(msg.arg1);
+                        writeMessage(AdbProtocol.CMD_CLSE, msg.arg1, msg.arg0, null, 0, 0);
+                    }
+                } else if (msg.command == AdbProtocol.CMD_WRTE) {
+                    waitingStream.onPayload(msg.payload, msg.payloadLength);
+                } else {
+                    streams.remove(msg.arg1);
+                    waitingStream.notifyRemoteClose();
+                }
+                break;
+
+            case AdbProtocol.CMD_AUTH:
+                int type;
+                byte[] data;
+                if (msg.arg0 != AdbProtocol.AUTH_TYPE_TOKEN) break;
+                switch (authState) {
+                    case HANDSHAKE:
+                        // 用私钥签名令牌（负载数组会被复用，取出令牌副本）
+                        type = AdbProtocol.AUTH_TYPE_SIGNATURE;
+                        try {
+                            data = crypto.signAdbTokenPayload(Arrays.copyOf(msg.payload, msg.payloadLength));
+                        } catch (GeneralSecurityException e) {
+                            throw new IOException("Failed to sign auth token", e);
+                        }
+                        authState = AuthState.SIGNATURE_SENT;
+                        break;
+                    case SIGNATURE_SENT:
+                        if (!interactiveAuth) {
+                            // 签名被拒绝且无人能确认弹窗，立即失败而不是等待到超时
+                            synchronized (this) {
+                                authState = AuthState.UNAUTHORIZED;
+                                notifyAll();
+                            }
+                            return;
+                        }
+                        // 签名被拒绝，发送公钥（需要用户确认）
+                        type = AdbProtocol.AUTH_TYPE_RSA_PUBLIC;
+                        data = crypto.getAdbPublicKeyPayload();
+                        authState = AuthState.AWAITING_USER;
+                        break;
+                    default:
+                        // 公钥已发送，等待用户确认期间 adbd 不应再发令牌
+                        return;
+                }
+                writeMessage(AdbProtocol.CMD_AUTH, type, 0, data, 0, data.length);
+                break;
+
+            case AdbProtocol.CMD_CNXN:
+                synchronized (this) {
+                    maxData = msg.arg1;
+                    protocolVersion = Math.min(msg.arg0, AdbProtocol.CONNECT_VERSION);
+                    features = AdbProtocol.parseFeatures(msg.payload, msg.payloadLength);
+                    authState = AuthState.AUTHORIZED;
+                    connected = true;
+                    notifyAll();
+                }
+                break;
+        }
+    }
+
+    private void handleClosed() {
+        outbound.fail(new IOException("Connection closed"));
+        synchronized (this) {
+            connected = false;
+            closed = true;
+            notifyAll();
+        }
+        // 在连接的锁之外通知各流，流的 onClose 回调中可以安全地调用本连接
+        cleanupStreams();
+        Runnable listener = disconnectListener;
+        if (listener != null) listener.run();
+    }
+
+    /** 建立连接（阻塞直到完成） */
+    public void connect() throws IOException, InterruptedException {
+        connect(Deadline.NONE);
+    }
+
+    /**
+     * 建立连接，握手和认证须在 timeoutMs 内完成
+     * 超时（例如 adbd 无响应、授权弹窗无人确认）抛出 SocketTimeoutException 并关闭连接
+     */
+    public void connect(long timeoutMs) throws IOException, InterruptedException {
+        connect(Deadline.after(timeoutMs));
+    }
+
+    /** 建立连接，握手和认证须在截止时间前完成，中断或超时都会关闭连接 */
+    public void connect(Deadline deadline) throws IOException, InterruptedException {
+        if (connected) throw new IllegalStateException("Already connected");
+        connectAttempted = true;
+        boolean success = false;
+        try {
+            transport.start(receiver);
+            byte[] banner = AdbProtocol.CONNECT_PAYLOAD;
+            writeMessage(AdbProtocol.CMD_CNXN, AdbProtocol.CONNECT_VERSION, AdbProtocol.CONNECT_MAXDATA,
+                    banner, 0, banner.length);
+            synchronized (this) {
+                while (!connected && !closed && authState != AuthState.UNAUTHORIZED) {
+                    deadline.await(this, authState == AuthState.AWAITING_USER ? "ADB authorization" : "ADB handshake");
+                }
+                if (authState == AuthState.UNAUTHORIZED) throw new AdbUnauthorizedException("ADB key not authorized");
+                if (!connected) throw new IOException("Connection failed");
+            }
+            success = true;
+        } finally {
+            if (!success) transport.close();
+        }
+    }
+
+    /**
+     * 设置签名被拒绝时的处理方式（须在 connect() 之前调用）
+     * true：发送公钥并等待用户确认授权弹窗（用户正在使用应用时）；
+     * false：立即以 AdbUnauthorizedException 失败（后台服务、待机处理等无人值守的场景）
+     */
+    public void setInteractiveAuth(boolean interactive) {
+        this.interactiveAuth = interactive;
+    }
+
+    /** 当前认证状态，连接失败后可据此区分未授权和其他错误 */
+    public AuthState getAuthState() {
+        return authState;
+    }
+
+    /** 连接是否仍然可用（已完成认证且传输层未关闭） */
+    public boolean isConnected() {
+        return connected && transport.isOpen();
+    }
+
+    /** 远端声明的单个报文最大负载，发往远端的报文不能超过此值 */
+    public int getMaxData() {
+        return maxData > 0 ? maxData : AdbProtocol.MAXDATA_LEGACY;
+    }
+
+    /**
+     * 双方实际使用的单报文上限：本端声明的 CONNECT_MAXDATA 与远端声明值的较小者
+     * adbd 按该值拆分发往本端的数据，接收窗口和写缓冲按此分配，不必按远端声明的 1 MiB 预留
+     */
+    public int getNegotiatedMaxData() {
+        return Math.min(getMaxData(), AdbProtocol.CONNECT_MAXDATA);
+    }
+
+    /** 协商后的协议版本（双方版本的较小值） */
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    /** adbd 在 CNXN 中声明的特性（如 shell_v2、cmd），连接建立前为空 */
+    public Set<String> getFeatures() {
+        return features;
+    }
+
+    public boolean hasFeature(String feature) {
+        return features.contains(feature);
+    }
+
+    /** 执行命令默认使用的服务：支持 shell v2 时使用 v2（可取得退出码），否则使用旧版 shell */
+    public ShellMode getDefaultShellMode() {
+        return hasFeature(AdbProtocol.FEATURE_SHELL_V2) ? ShellMode.SHELL_V2 : ShellMode.SHELL;
+    }
+
+    /**
+     * 按用途选择执行服务
+     * 需要退出码时使用 getDefaultShellMode()；只需要输出时使用 exec:，字节原样回传、开销最小
+     */
+    public ShellMode chooseShellMode(boolean needExitCode) {
+        return needExitCode ? getDefaultShellMode() : ShellMode.EXEC;
+    }
+
+    /**
+     * 以 exec: 服务打开一条命令，输出不经 PTY 和分帧，直接从流中读取原始字节
+     * 适合配合 getInputStream() 和 LineParser 流式解析大量输出
+     */
+    public AdbStream openExec(String command, Deadline deadline) throws IOException, InterruptedException {
+        return open(ShellMode.EXEC.destination(command), deadline);
+    }
+
+    /** 是否需要计算和校验负载校验和 */
+    boolean isChecksumRequired() {
+        return protocolVersion < AdbProtocol.VERSION_SKIP_CHECKSUM;
+    }
+
+    /**
+     * 设置连接断开回调
+     * 在传输层关闭时调用（读线程或事件循环线程），回调中不应执行阻塞操作
+     */
+    public void setDisconnectListener(Runnable listener) {
+        this.disconnectListener = listener;
+    }
+
+    /** 打开一个 shell 流 */
+    public AdbStream open(String destination) throws UnsupportedEncodingException, IOException, InterruptedException {
+        return open(destination, Deadline.NONE);
+    }
+
+    /** 打开一个流，远端须在 timeoutMs 内确认 */
+    public AdbStream open(String destination, long timeoutMs) throws IOException, InterruptedException {
+        return open(destination, Deadline.after(timeoutMs));
+    }
+
+    /**
+     * 打开一个流，远端须在截止时间前确认
+     * 超时或中断时放弃该流（远端稍后的确认会被回复 CLSE）
+     */
+    public AdbStream open(String destination, Deadline deadline) throws IOException, InterruptedException {
+        return open(encodeDestination(destination), deadline);
+    }
+
+    /** 使用已编码的 OPEN 负载（见 encodeDestination）打开一个流 */
+    AdbStream open(byte[] destination, Deadline deadline) throws IOException, InterruptedException {
+        AdbStream stream = beginOpen(destination, null, deadline);
+        boolean success = false;
+        try {
+            synchronized (stream) {
+                while (!stream.isOpened() && !stream.isClosed()) deadline.await(stream, "Stream open");
+            }
+            if (!stream.isOpened()) throw new ConnectException("Stream open rejected by remote peer");
+            success = true;
+        } finally {
+            if (!success) stream.close();
+        }
+        return stream;
+    }
+
+    /**
+     * 异步执行一条 shell 命令
+     *
+     * 只发出 OPEN 即返回，输出在连接读线程上收集，远端关闭流时以 CommandResult 完成，
+     * 一个线程即可同时发起大量命令。Future 的依赖阶段默认在读线程上执行，
+     * 其中不应有阻塞操作（需要阻塞时使用 *Async 方法并指定线程池）。
+     * 取消 Future 会关闭流；打开失败或连接断开以失败的 CommandResult 完成。
+     * 使用 getDefaultShellMode() 选择的服务，支持 shell v2 时结果带有退出码和单独的标准错误。
+     */
+    public CompletableFuture<CommandResult> execute(String command) {
+        return execute(command, getDefaultShellMode());
+    }
+
+    /** 使用指定服务异步执行一条命令，连接尚未完成握手时立即失败，不等待 */
+    public CompletableFuture<CommandResult> execute(String command, ShellMode mode) {
+        return execute(command, mode, Deadline.now());
+    }
+
+    /** 使用指定服务异步执行一条命令，连接尚在握手时最多等到截止时间再发出 OPEN */
+    public CompletableFuture<CommandResult> execute(String command, ShellMode mode, Deadline deadline) {
+        AdbCommandFuture future = new AdbCommandFuture(command, mode);
+        try {
+            future.attach(beginOpen(encodeDestination(mode.destination(command)), future, deadline));
+        } catch (IOException e) {
+            future.fail(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.fail("Interrupted");
+        }
+        return future;
+    }
+
+    /**
+     * 发送 OPEN 后立即返回，不等待远端确认
+     * ADB 协议在同一连接上多路复用多个流，调用方可以连续打开多个流；
+     * 收到数据、远端关闭流（命令执行完毕）或连接断开时回调 listener。
+     * 另一个线程正在握手时最多等到截止时间，超时抛出 SocketTimeoutException。
+     */
+    public AdbStream beginOpen(String destination, AdbStream.Listener listener, Deadline deadline)
+            throws IOException, InterruptedException {
+        return beginOpen(encodeDestination(destination), listener, deadline);
+    }
+
+    /** 使用已编码的 OPEN 负载发出 OPEN，热路径上不再做字符串编码 */
+    AdbStream beginOpen(byte[] destination, AdbStream.Listener listener, Deadline deadline)
+            throws IOException, InterruptedException {
+        if (!connectAttempted) throw new IllegalStateException("connect() must be called first");
+        synchronized (this) {
+            while (!connected && !closed) deadline.await(this, "ADB handshake");
+            if (!connected) throw new IOException("Connection failed");
+        }
+        AdbStream stream = streams.add(id -> new AdbStream(this, id));
+        stream.setListener(listener);
+        int localId = stream.getLocalId();
+        try {
+            writeMessage(AdbProtocol.CMD_OPEN, localId, 0, destination, 0, destination.length);
+        } catch (IOException e) {
+            streams.remove(localId);
+            throw e;
+        }
+        return stream;
+    }
+
+    /** 把目标服务字符串编码为 OPEN 报文负载（UTF-8，以 '\0' 结尾），可预先编码后重复使用 */
+    static byte[] encodeDestination(String destination) {
+        return (destination + '\0').getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 发送一个报文
+     * 所有报文经由出站队列写出，多线程写入时保证报文不交错，积压的报文合并为一次写出
+     */
+    void writeMessage(int cmd, int arg0, int arg1, byte[] payload, int offset, int length) throws IOException {
+        outbound.send(cmd, arg0, arg1, payload, offset, length, isChecksumRequired());
+    }
+
+    /** 本端关闭已打开的流后从登记表中移除（远端不一定回复 CLSE） */
+    void unregister(AdbStream stream) {
+        streams.remove(stream.getLocalId());
+    }
+
+    private void cleanupStreams() {
+        // 连接已断开，无需再向远端发送 CLSE
+        for (AdbStream s : streams.removeAll()) {
+            s.notifyClose();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        transport.close();
+    }
+}
@@ -0,0 +1,437 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ADB 长连接管理
+ *
+ * 持有一条已完成 CNXN/AUTH 握手的 AdbConnection，供多次命令复用：
+ * - 定期发送保活探测，发现连接失效时主动重建；
+ * - adbd 重启或连接断开后按指数退避自动重连；
+ * - 调用方通过 getConnection() 获取热连接，只需打开流，无需重复握手。
+ *
+ * 未调用 start() 时不做保活和自动重连，getConnection() 按需同步建立连接。
+ *
+ * 默认使用进程内共享的 NIO 事件循环（AdbNioTransport）承载连接，
+ * 事件循环不可用或关闭 NIO 时回退到阻塞 socket（AdbSocketTransport）。
+ *
+ * 端点由 AdbEndpointDiscovery 提供：先直接连接上次可用的端点，被拒绝（adbd 换了端口或未开启）时
+ * 并行探测候选端口，找到后记住新端点，常见情况只需一次连接，失败情况几毫秒内返回。
+ *
+ * 建立连接（TCP 连接 + 握手）只在 connectLock 下进行，不占用对象锁：后台重连握手期间，
+ * 前台调用方按自己的截止时间等待 connectLock，超时即失败，不会被一次重连拖住。
+ *
+ * 授权状态缓存在 AuthStore 中。关闭交互授权后，签名被拒绝立即以 AdbUnauthorizedException 失败，
+ * 已知未授权时不再发起握手，也不再自动重连；之后授权状态改变或重新允许交互授权时才恢复重连。
+ */
+public class AdbConnectionManager implements Closeable {
+
+    /** 保活探测间隔 */
+    public static final long KEEPALIVE_INTERVAL_MS = 60_000;
+    /** 重连最小退避时间 */
+    public static final long RECONNECT_MIN_DELAY_MS = 1_000;
+    /** 重连最大退避时间 */
+    public static final long RECONNECT_MAX_DELAY_MS = 60_000;
+    /** TCP 连接超时 */
+    public static final int CONNECT_TIMEOUT = 5000;
+    /** CNXN/AUTH 握手超时（含等待用户确认授权弹窗） */
+    public static final long HANDSHAKE_TIMEOUT_MS = 10_000;
+    /** 保活探测超时 */
+    public static final long KEEPALIVE_TIMEOUT_MS = 5_000;
+
+    /** 保活探测命令：开销最小的 shell 命令 */
+    private static final String KEEPALIVE_COMMAND = "shell:true";
+
+    /** 连接状态回调 */
+    public interface Listener {
+        /** 已建立新连接 */
+        void onConnected(AdbConnection connection);
+
+        /** 连接失败或断开，将在 retryDelayMs 后重试（未启动或未授权时为 -1） */
+        void onDisconnected(Exception cause, long retryDelayMs);
+
+        /** 在新的端点上建立了连接（可持久化，下次启动时恢复） */
+        default void onEndpointChanged(InetSocketAddress endpoint) {
+        }
+    }
+
+    /** 授权状态的存储，可跨进程重启持久化 */
+    public interface AuthStore {
+        AdbAuthStatus load();
+
+        void save(AdbAuthStatus status);
+    }
+
+    /** 默认存储：只保存在内存中 */
+    private static final class MemoryAuthStore implements AuthStore {
+        private volatile AdbAuthStatus status = AdbAuthStatus.UNKNOWN;
+
+        @Override
+        public AdbAuthStatus load() {
+            return status;
+        }
+
+        @Override
+        public void save(AdbAuthStatus status) {
+            this.status = status;
+        }
+    }
+
+    private final AdbEndpointDiscovery discovery;
+    private final AdbCrypto crypto;
+    /** 建立连接时持有，同一时刻只有一个线程在握手；获取顺序先于对象锁 */
+    private final ReentrantLock connectLock = new ReentrantLock();
+
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> keepaliveTask;
+    private ScheduledFuture<?> reconnectTask;
+    /** 写入需持有对象锁；peekConnection() 无锁读取 */
+    private volatile AdbConnection connection;
+    private long reconnectDelay = RECONNECT_MIN_DELAY_MS;
+    private volatile Listener listener;
+    private volatile boolean useNio = true;
+    private volatile AuthStore authStore = new MemoryAuthStore();
+    private volatile boolean interactiveAuth = true;
+    private volatile boolean portScan;
+    private boolean started;
+    private boolean closed;
+
+    public AdbConnectionManager(String host, int port, AdbCrypto crypto) {
+        this(new AdbEndpointDiscovery(host, port), crypto);
+    }
+
+    public AdbConnectionManager(AdbEndpointDiscovery discovery, AdbCrypto crypto) {
+        this.discovery = discovery;
+        this.crypto = crypto;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** 是否使用 NIO 事件循环承载连接（默认开启，关闭后使用阻塞 socket） */
+    public void setUseNio(boolean useNio) {
+        this.useNio = useNio;
+    }
+
+    /**
+     * 首选端点不可用时，是否在固定候选端口之外扫描 discovery 设置的端口范围（默认关闭）
+     * 扫描耗时较长，只适合用户在场、等待结果的场景
+     */
+    public void setPortScan(boolean portScan) {
+        this.portScan = portScan;
+    }
+
+    /** 设置授权状态的存储 */
+    public void setAuthStore(AuthStore store) {
+        this.authStore = store;
+    }
+
+    /** 缓存的授权状态 */
+    public AdbAuthStatus getAuthStatus() {
+        return authStore.load();
+    }
+
+    /**
+     * 设置签名被拒绝时是否发送公钥并等待用户确认授权弹窗（默认允许）
+     * 后台无人值守时应关闭，避免握手挂起到超时；重新允许时立即尝试重连。
+     */
+    public synchronized void setInteractiveAuth(boolean interactive) {
+        this.interactiveAuth = interactive;
+        if (interactive && started && connection == null) scheduleReconnect(0);
+    }
+
+    /**
+     * 启动长连接维护：立即在后台建立连接，并开始定期保活
+     */
+    public synchronized void start() {
+        if (closed) throw new IllegalStateException("Manager closed");
+        if (started) return;
+        started = true;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "AdbConnectionManager");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduleReconnect(0);
+        keepaliveTask = scheduler.scheduleWithFixedDelay(this::keepalive,
+                KEEPALIVE_INTERVAL_MS, KEEPALIVE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /** 是否处于长连接维护模式 */
+    public synchronized boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * 获取已认证的连接
+     * 已有热连接时直接返回；否则在当前线程同步建立连接。
+     */
+    public AdbConnection getConnection() throws IOException, InterruptedException {
+        return getConnection(Deadline.NONE);
+    }
+
+    /**
+     * 获取已认证的连接，需要新建连接时握手不晚于截止时间（不限时则为 HANDSHAKE_TIMEOUT_MS）
+     * 后台重连正在握手时按截止时间等待其结束，超时抛出 SocketTimeoutException。
+     */
+    public AdbConnection getConnection(Deadline deadline) throws IOException, InterruptedException {
+        AdbConnection conn = currentConnection();
+        if (conn != null) return conn;
+
+        acquireConnectLock(deadline);
+        try {
+            // 等待期间其他线程可能已建立连接
+            conn = currentConnection();
+            if (conn != null) return conn;
+            synchronized (this) {
+                dropConnection();
+                if (reconnectTask != null) {
+                    reconnectTask.cancel(false);
+                    reconnectTask = null;
+                }
+            }
+            try {
+                return establish(deadline);
+            } catch (IOException | InterruptedException e) {
+                onConnectFailed(e);
+                throw e;
+            }
+        } finally {
+            connectLock.unlock();
+        }
+    }
+
+    /** 可用的连接，没有时返回 null；管理器已关闭时抛出 IOException */
+    private synchronized AdbConnection currentConnection() throws IOException {
+        if (closed) throw new IOException("Manager closed");
+        return connection != null && connection.isConnected() ? connection : null;
+    }
+
+    private void acquireConnectLock(Deadline deadline) throws InterruptedException, SocketTimeoutException {
+        if (deadline == Deadline.NONE) {
+            connectLock.lockInterruptibly();
+        } else if (!connectLock.tryLock(deadline.remainingMillis(), TimeUnit.MILLISECONDS)) {
+            throw new SocketTimeoutException("ADB connect timed out");
+        }
+    }
+
+    /**
+     * 返回当前的热连接，没有时返回 null
+     * 不建立连接、不等待正在进行的握手，可在主线程调用
+     */
+    public AdbConnection peekConnection() {
+        AdbConnection conn = connection;
+        return conn != null && conn.isConnected() ? conn : null;
+    }
+
+    /**
+     * 标记连接失效
+     * 调用方在流操作中发现连接异常时调用，下次 getConnection() 会重新建立连接。
+     */
+    public synchronized void invalidate(AdbConnection failed) {
+        if (failed == null || failed != connection) return;
+        dropConnection();
+        if (started) scheduleReconnect(reconnectDelay);
+    }
+
+    /** 关闭当前连接（不影响保活调度，下次使用时重新建立） */
+    public synchronized void disconnect() {
+        dropConnection();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        started = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        keepaliveTask = null;
+        reconnectTask = null;
+        dropConnection();
+    }
+
+    /** 建立新连接并完成认证（需持有 connectLock，不持有对象锁） */
+    private AdbConnection establish(Deadline deadline) throws IOException, InterruptedException {
+        AuthStore store = authStore;
+        boolean interactive = interactiveAuth;
+        if (!interactive && store.load() == AdbAuthStatus.UNAUTHORIZED) {
+            // 已知未授权且无人能确认弹窗，不发起握手
+            throw new AdbUnauthorizedException("ADB key not authorized");
+        }
+        if (deadline == Deadline.NONE) deadline = Deadline.after(HANDSHAKE_TIMEOUT_MS);
+        InetSocketAddress previous = discovery.getLastEndpoint();
+        AdbConnection conn = AdbConnection.create(openTransport(deadline), crypto);
+        conn.setInteractiveAuth(interactive);
+        conn.setDisconnectListener(() -> onConnectionLost(conn));
+        try {
+            conn.connect(deadline);
+        } catch (IOException | InterruptedException e) {
+            conn.setDisconnectListener(null);
+            try { conn.close(); } catch (IOException ignored) { }
+            AdbConnection.AuthState state = conn.getAuthState();
+            if (state == AdbConnection.AuthState.UNAUTHORIZED || state == AdbConnection.AuthState.AWAITING_USER) {
+                // 签名已被拒绝（用户未确认弹窗同样说明当前未授权）
+                store.save(AdbAuthStatus.UNAUTHORIZED);
+            }
+            throw e;
+        }
+        if (store.load() != AdbAuthStatus.AUTHORIZED) store.save(AdbAuthStatus.AUTHORIZED);
+        synchronized (this) {
+            if (closed) {
+                conn.setDisconnectListener(null);
+                try { conn.close(); } catch (IOException ignored) { }
+                throw new IOException("Manager closed");
+            }
+            connection = conn;
+            reconnectDelay = RECONNECT_MIN_DELAY_MS;
+        }
+        Listener l = listener;
+        InetSocketAddress endpoint = discovery.getPreferredEndpoint();
+        if (!endpoint.equals(previous)) {
+            discovery.setLastEndpoint(endpoint);
+            if (l != null) l.onEndpointChanged(endpoint);
+        }
+        if (l != null) l.onConnected(conn);
+        return conn;
+    }
+
+    /**
+     * 建立传输层：先连接首选端点，被拒绝时探测其他候选端口
+     * 探测到的新端点在握手成功后才通知 Listener
+     */
+    private AdbTransport openTransport(Deadline deadline) throws IOException {
+        InetSocketAddress preferred = discovery.getPreferredEndpoint();
+        try {
+            return openTransport(preferred, deadline);
+        } catch (ConnectException e) {
+            // 端口未监听：adbd 未开启或换了端口
+            InetSocketAddress found = discovery.discover(portScan, deadline);
+            return openTransport(found, deadline);
+        }
+    }
+
+    /** 连接到指定端点：优先 NIO 事件循环，不可用时回退到阻塞 socket */
+    private AdbTransport openTransport(InetSocketAddress address, Deadline deadline) throws IOException {
+        deadline.check("ADB connect");
+        int timeout = (int) Math.min(CONNECT_TIMEOUT, deadline.remainingMillis());
+        if (useNio) {
+            AdbEventLoop loop = null;
+            try {
+                loop = AdbEventLoop.getDefault();
+            } catch (IOException e) {
+                // Selector 无法创建，回退到阻塞 socket
+            }
+            if (loop != null) return AdbNioTransport.open(loop, address, timeout);
+        }
+        return AdbSocketTransport.open(address, timeout);
+    }
+
+    private void dropConnection() {
+        AdbConnection old = connection;
+        connection = null;
+        if (old != null) {
+            old.setDisconnectListener(null);
+            try { old.close(); } catch (IOException ignored) { }
+        }
+    }
+
+    private void onConnectFailed(Exception cause) {
+        long delay = -1;
+        synchronized (this) {
+            // 未授权时重连没有意义，等待授权状态改变（见 keepalive）或重新允许交互授权
+            if (started && !(cause instanceof AdbUnauthorizedException)) {
+                delay = reconnectDelay;
+                scheduleReconnect(delay);
+                reconnectDelay = Math.min(reconnectDelay * 2, RECONNECT_MAX_DELAY_MS);
+            }
+        }
+        Listener l = listener;
+        if (l != null) l.onDisconnected(cause, delay);
+    }
+
+    /** 读线程退出时回调，只投递任务，不在读线程上阻塞 */
+    private void onConnectionLost(AdbConnection lost) {
+        ScheduledExecutorService s;
+        synchronized (this) {
+            s = scheduler;
+        }
+        if (s == null) return;
+        try {
+            s.execute(() -> {
+                synchronized (AdbConnectionManager.this) {
+                    if (lost != connection) return;
+                    dropConnection();
+                    onConnectFailed(new IOException("Connection lost"));
+                }
+            });
+        } catch (RejectedExecutionException ignored) {
+            // 管理器已关闭
+        }
+    }
+
+    private void scheduleReconnect(long delayMs) {
+        if (scheduler == null || closed) return;
+        if (reconnectTask != null && !reconnectTask.isDone()) return;
+        reconnectTask = scheduler.schedule(this::reconnect, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void reconnect() {
+        synchronized (this) {
+            reconnectTask = null;
+        }
+        // 前台调用方正在建立连接，失败时由它安排重连
+        if (!connectLock.tryLock()) return;
+        try {
+            synchronized (this) {
+                if (closed || (connection != null && connection.isConnected())) return;
+                dropConnection();
+            }
+            establish(Deadline.NONE);
+        } catch (IOException e) {
+            onConnectFailed(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connectLock.unlock();
+        }
+    }
+
+    /** 保活探测：打开一个最轻量的 shell 流，失败则判定连接失效 */
+    private void keepalive() {
+        AdbConnection conn;
+        synchronized (this) {
+            conn = connection;
+            if (conn == null) {
+                // 因未授权停止重连后，授权状态已被其他连接更新（例如用户在应用内完成了授权）
+                if (reconnectTask == null && authStore.load() != AdbAuthStatus.UNAUTHORIZED) scheduleReconnect(0);
+                return;
+            }
+        }
+        if (!conn.isConnected()) {
+            invalidate(conn);
+            return;
+        }
+        try {
+            AdbStream stream = conn.open(KEEPALIVE_COMMAND, KEEPALIVE_TIMEOUT_MS);
+            stream.close();
+        } catch (IOException e) {
+            invalidate(conn);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -11,6 +11,7 @@ import java.security.GeneralSecurityException;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.interfaces.RSAPublicKey;
 import java.security.spec.InvalidKeySpecException;
@@ -22,12 +23,18 @@ import javax.crypto.Cipher;
 /**
  * ADB RSA 加密工具类
  * 处理 ADB 协议所需的 RSA 密钥对生成、存储和签名操作
+ * 签名用的 Cipher 只初始化一次并复用，ADB 格式的公钥只转换一次并缓存；
+ * 可在后台线程调用 warmUp() 预先完成，握手时直接使用。
  * 基于 cgutman/AdbLib 开源库（Apache 2.0 许可证）
  */
 public class AdbCrypto {
 
     private KeyPair keyPair;
     private AdbBase64 base64;
+    /** 已初始化的签名 Cipher（非线程安全，由 this 的锁保护） */
+    private Cipher signer;
+    /** ADB 格式公钥负载的缓存 */
+    private volatile byte[] publicKeyPayload;
 
     public static final int KEY_LENGTH_BITS = 2048;
     public static final int KEY_LENGTH_BYTES = KEY_LENGTH_BITS / 8;
@@ -126,21 +133,70 @@ public class AdbCrypto {
     }
 
     /** 使用私钥签名 ADB 认证令牌 */
-    public byte[] signAdbTokenPayload(byte[] payload) throws GeneralSecurityException {
-        Cipher c = Cipher.getInstance("RSA/ECB/NoPadding");
-        c.init(Cipher.ENCRYPT_MODE, keyPair.getPrivate());
-        c.update(SIGNATURE_PADDING);
-        return c.doFinal(payload);
+    public synchronized byte[] signAdbTokenPayload(byte[] payload) throws GeneralSecurityException {
+        Cipher c = signer();
+        try {
+            c.update(SIGNATURE_PADDING);
+            // doFinal 之后 Cipher 恢复到初始化后的状态，可直接用于下一次签名
+            return c.doFinal(payload);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            // 状态未知，下次重新初始化
+            signer = null;
+            throw e;
+        }
+    }
+
+    /** 获取已初始化的签名 Cipher（需持有锁） */
+    private Cipher signer() throws GeneralSecurityException {
+        if (signer == null) {
+            Cipher c = Cipher.getInstance("RSA/ECB/NoPadding");
+            c.init(Cipher.ENCRYPT_MODE, keyPair.getPrivate());
+            signer = c;
+        }
+        return signer;
     }
 
-    /** 获取 ADB 格式的 RSA 公钥 */
+    /**
+     * 获取 ADB 格式的 RSA 公钥
+     * 首次调用时转换并缓存，返回的数组为共享缓存，调用方不得修改
+     */
     public byte[] getAdbPublicKeyPayload() throws IOException {
-        byte[] convertedKey = convertRsaPublicKeyToAdbFormat((RSAPublicKey) keyPair.getPublic());
-        StringBuilder keyString = new StringBuilder(720);
-        keyString.append(base64.encodeToString(convertedKey));
-        keyString.append(" appfreeze@tv");
-        keyString.append('\0');
-        return keyString.toString().getBytes("UTF-8");
+        byte[] payload = publicKeyPayload;
+        if (payload == null) {
+            byte[] convertedKey = convertRsaPublicKeyToAdbFormat((RSAPublicKey) keyPair.getPublic());
+            StringBuilder keyString = new StringBuilder(720);
+            keyString.append(base64.encodeToString(convertedKey));
+            keyString.append(" appfreeze@tv");
+            keyString.append('\0');
+            payload = keyString.toString().getBytes("UTF-8");
+            publicKeyPayload = payload;
+        }
+        return payload;
+    }
+
+    /**
+     * 公钥指纹：公钥编码的 SHA-256 前 8 字节（十六进制）
+     * 用于把持久化的授权状态与具体密钥对应，换了密钥（含加载失败时的临时密钥）不会沿用旧状态
+     */
+    public String getFingerprint() throws NoSuchAlgorithmException {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(keyPair.getPublic().getEncoded());
+        StringBuilder hex = new StringBuilder(16);
+        for (int i = 0; i < 8; i++) {
+            hex.append(Character.forDigit((digest[i] >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(digest[i] & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * 预先初始化签名 Cipher 并转换公钥（在后台线程调用）
+     * 之后的认证握手不再做 Provider 查找和大数运算
+     */
+    public void warmUp() throws GeneralSecurityException, IOException {
+        synchronized (this) {
+            signer();
+        }
+        getAdbPublicKeyPayload();
     }
 
     /** 保存密钥对到文件 */
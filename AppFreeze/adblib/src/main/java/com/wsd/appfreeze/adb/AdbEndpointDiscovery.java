@@ -0,0 +1,240 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * adbd 端点发现
+ *
+ * adbd 不一定监听在 5555：adb tcpip 可以指定其他端口，Android 11+ 的无线调试使用随机端口。
+ * 本类以非阻塞 connect 并行探测一组候选端口，连通后发送 CNXN 报文，
+ * 按对端回复的报文头（CNXN/AUTH）确认是 adbd，而不只是端口开放。
+ *
+ * 候选顺序即优先级：上次可用的端点最先，其次是配置的固定端口，最后是扫描范围。
+ * 本机端口未监听时 connect 立即被拒绝，固定端口的探测通常在几毫秒内全部结束；
+ * 扫描范围较大，只在调用方允许时（scanRange 为 true）进行，同时在途的探测数有上限。
+ * 回复 STLS 的端点要求 TLS 配对（Android 11+ 无线调试），本客户端无法使用，不作为结果。
+ */
+public class AdbEndpointDiscovery {
+
+    /** adb tcpip 的默认端口 */
+    public static final int DEFAULT_PORT = 5555;
+    /** 一轮探测的默认超时 */
+    public static final long PROBE_TIMEOUT_MS = 500;
+    /** 同时在途的探测数上限，避免扫描时占用过多文件描述符 */
+    private static final int MAX_PARALLEL = 64;
+
+    /** 单个端口的探测状态 */
+    private static final int PENDING = 0;
+    private static final int FAILED = 1;
+    private static final int FOUND = 2;
+
+    private final String host;
+    private final int[] ports;
+    private volatile int scanFrom;
+    private volatile int scanTo;
+    private volatile InetSocketAddress lastEndpoint;
+
+    /**
+     * @param host  adbd 所在主机（通常为 127.0.0.1）
+     * @param ports 固定候选端口，按优先级排列
+     */
+    public AdbEndpointDiscovery(String host, int... ports) {
+        this.host = host;
+        this.ports = ports.clone();
+    }
+
+    /** 设置扫描范围 [from, to]（含两端），from > to 表示不扫描 */
+    public void setScanRange(int from, int to) {
+        this.scanFrom = from;
+        this.scanTo = to;
+    }
+
+    /** 上次可用的端点，没有时返回 null */
+    public InetSocketAddress getLastEndpoint() {
+        return lastEndpoint;
+    }
+
+    /** 记录可用的端点（连接成功后调用，也可用持久化的值恢复） */
+    public void setLastEndpoint(InetSocketAddress endpoint) {
+        this.lastEndpoint = endpoint;
+    }
+
+    /**
+     * 首选端点：上次可用的端点，没有时为第一个固定端口
+     * 调用方先直接连接首选端点，失败后再调用 discover()，常见情况只需一次连接
+     */
+    public InetSocketAddress getPreferredEndpoint() {
+        InetSocketAddress last = lastEndpoint;
+        if (last != null) return last;
+        return new InetSocketAddress(host, ports.length > 0 ? ports[0] : DEFAULT_PORT);
+    }
+
+    /**
+     * 并行探测候选端口，返回优先级最高的 adbd 端点并记为上次可用的端点
+     *
+     * @param scanRange 是否在固定端口之后扫描设置的端口范围
+     * @param deadline  截止时间（同时不超过 PROBE_TIMEOUT_MS；扫描时不受此限制）
+     * @throws ConnectException 没有找到可用的 adbd
+     */
+    public InetSocketAddress discover(boolean scanRange, Deadline deadline) throws IOException {
+        if (!scanRange) deadline = deadline.min(PROBE_TIMEOUT_MS);
+        Set<Integer> candidates = new LinkedHashSet<>();
+        InetSocketAddress last = lastEndpoint;
+        if (last != null && host.equals(last.getHostString())) candidates.add(last.getPort());
+        for (int port : ports) candidates.add(port);
+        if (scanRange) {
+            for (int port = scanFrom; port <= scanTo && port > 0; port++) candidates.add(port);
+        }
+
+        List<Integer> order = new ArrayList<>(candidates);
+        int found = probe(order, deadline);
+        if (found < 0) throw new ConnectException("No adbd endpoint found on " + host);
+        InetSocketAddress endpoint = new InetSocketAddress(host, order.get(found));
+        lastEndpoint = endpoint;
+        return endpoint;
+    }
+
+    /**
+     * 探测一组端口，返回优先级最高的 adbd 所在的下标，没有时返回 -1
+     * 一旦某个端口确认为 adbd 且比它优先的端口都已失败，立即返回，不等待其余探测
+     */
+    private int probe(List<Integer> order, Deadline deadline) throws IOException {
+        int n = order.size();
+        int[] state = new int[n];
+        byte[] banner = AdbProtocol.generateMessage(AdbProtocol.CMD_CNXN, AdbProtocol.CONNECT_VERSION,
+                AdbProtocol.CONNECT_MAXDATA, AdbProtocol.CONNECT_PAYLOAD);
+        int next = 0;
+        int inFlight = 0;
+        // 优先级最高的未失败候选
+        int best = 0;
+
+        try (Selector selector = Selector.open()) {
+            try {
+                while (best < n) {
+                    if (state[best] == FOUND) return best;
+                    if (state[best] == FAILED) {
+                        best++;
+                        continue;
+                    }
+                    while (inFlight < MAX_PARALLEL && next < n) {
+                        if (start(selector, next, order.get(next), banner)) {
+                            inFlight++;
+                        } else {
+                            state[next] = FAILED;
+                        }
+                        next++;
+                    }
+                    if (inFlight == 0) continue;
+
+                    long remaining = deadline.remainingMillis();
+                    if (remaining == 0) return -1;
+                    selector.select(remaining == Long.MAX_VALUE ? 0 : remaining);
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        Probe probe = (Probe) key.attachment();
+                        int result = probe.handle(key);
+                        if (result != PENDING) {
+                            state[probe.index] = result;
+                            inFlight--;
+                            key.cancel();
+                            closeQuietly(key.channel());
+                        }
+                    }
+                }
+                return -1;
+            } finally {
+                for (SelectionKey key : selector.keys()) closeQuietly(key.channel());
+            }
+        }
+    }
+
+    /** 发起非阻塞连接，立即失败（本机端口未监听）时返回 false */
+    private boolean start(Selector selector, int index, int port, byte[] banner) {
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Probe probe = new Probe(index, banner);
+            if (channel.connect(new InetSocketAddress(host, port))) {
+                channel.register(selector, SelectionKey.OP_WRITE, probe);
+            } else {
+                channel.register(selector, SelectionKey.OP_CONNECT, probe);
+            }
+            return true;
+        } catch (IOException e) {
+            closeQuietly(channel);
+            return false;
+        }
+    }
+
+    /** 单个端口的探测：连接 → 发送 CNXN → 读取回复的报文头 */
+    private static final class Probe {
+        final int index;
+        private final ByteBuffer out;
+        private final ByteBuffer header = ByteBuffer.allocate(AdbProtocol.ADB_HEADER_LENGTH)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        Probe(int index, byte[] banner) {
+            this.index = index;
+            this.out = ByteBuffer.wrap(banner);
+        }
+
+        int handle(SelectionKey key) {
+            SocketChannel channel = (SocketChannel) key.channel();
+            try {
+                if (key.isConnectable()) {
+                    if (!channel.finishConnect()) return PENDING;
+                    key.interestOps(SelectionKey.OP_WRITE);
+                }
+                if (isSelfConnected(channel)) {
+                    // 扫描临时端口范围时，本端分配到的端口恰好等于目标端口会连接到自身（TCP 同时打开），
+                    // 读回的是自己发出的 CNXN
+                    return FAILED;
+                }
+                if (key.isWritable() || out.hasRemaining()) {
+                    channel.write(out);
+                    if (out.hasRemaining()) return PENDING;
+                    key.interestOps(SelectionKey.OP_READ);
+                    return PENDING;
+                }
+                if (key.isReadable()) {
+                    if (channel.read(header) < 0) return FAILED;
+                    if (header.hasRemaining()) return PENDING;
+                    int command = header.getInt(0);
+                    int magic = header.getInt(20);
+                    if (command != (magic ^ 0xFFFFFFFF)) return FAILED;
+                    // 要求 TLS 的端点本客户端无法使用
+                    return command == AdbProtocol.CMD_CNXN || command == AdbProtocol.CMD_AUTH ? FOUND : FAILED;
+                }
+                return PENDING;
+            } catch (IOException e) {
+                return FAILED;
+            }
+        }
+    }
+
+    private static boolean isSelfConnected(SocketChannel channel) throws IOException {
+        return channel.isConnected() && channel.getLocalAddress().equals(channel.getRemoteAddress());
+    }
+
+    private static void closeQuietly(Channel channel) {
+        if (channel == null) return;
+        try { channel.close(); } catch (IOException ignored) { }
+    }
+}
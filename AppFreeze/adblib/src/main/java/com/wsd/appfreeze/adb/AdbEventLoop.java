@@ -0,0 +1,116 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * NIO 事件循环
+ * 一个线程、一个 Selector，为任意多个 AdbNioTransport 处理读写就绪事件。
+ * 注册、修改关注事件等对 Selector 的操作都投递到循环线程上执行。
+ */
+public class AdbEventLoop implements Closeable {
+
+    /** 事件就绪回调（在循环线程上执行） */
+    interface Handler {
+        void onReady(SelectionKey key);
+    }
+
+    private static AdbEventLoop defaultLoop;
+
+    private final Selector selector;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    public AdbEventLoop(String name) throws IOException {
+        selector = Selector.open();
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** 进程内共享的默认事件循环，首次使用时创建 */
+    public static synchronized AdbEventLoop getDefault() throws IOException {
+        if (defaultLoop == null || defaultLoop.closed) {
+            defaultLoop = new AdbEventLoop("AdbEventLoop");
+        }
+        return defaultLoop;
+    }
+
+    /** 当前线程是否为事件循环线程 */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /** 在循环线程上执行任务 */
+    public void execute(Runnable task) {
+        if (inEventLoop()) {
+            task.run();
+            return;
+        }
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /** 把通道注册到本循环（异步完成），返回前通道须已设为非阻塞 */
+    void register(SelectableChannel channel, int ops, Handler handler, RegisterCallback callback) {
+        execute(() -> {
+            try {
+                callback.onRegistered(channel.register(selector, ops, handler));
+            } catch (IOException | RuntimeException e) {
+                callback.onFailed(e);
+            }
+        });
+    }
+
+    /** 注册结果回调 */
+    interface RegisterCallback {
+        void onRegistered(SelectionKey key);
+
+        void onFailed(Exception cause);
+    }
+
+    private void run() {
+        while (!closed) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                break;
+            }
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException ignored) {
+                    // 单个任务失败不影响其他连接
+                }
+            }
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
+                it.remove();
+                try {
+                    if (key.isValid()) ((Handler) key.attachment()).onReady(key);
+                } catch (CancelledKeyException ignored) {
+                    // 通道已在其他线程关闭
+                }
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            try { key.channel().close(); } catch (IOException ignored) { }
+        }
+        try { selector.close(); } catch (IOException ignored) { }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+    }
+}
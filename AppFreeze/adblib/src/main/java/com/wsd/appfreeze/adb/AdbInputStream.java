@@ -0,0 +1,68 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * AdbStream 的 InputStream 视图
+ * 逐块取出接收缓冲区中的数据，当前块读完再取下一块，不做额外拼接
+ */
+final class AdbInputStream extends InputStream {
+
+    private final AdbStream stream;
+    private byte[] chunk;
+    private int position;
+    private boolean eof;
+
+    AdbInputStream(AdbStream stream) {
+        this.stream = stream;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) return -1;
+        return chunk[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+        if (len == 0) return 0;
+        if (!fill()) return -1;
+        int n = Math.min(len, chunk.length - position);
+        System.arraycopy(chunk, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return chunk != null ? chunk.length - position : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        chunk = null;
+        stream.close();
+    }
+
+    /** 当前块读完时阻塞取下一块，已到流末尾返回 false */
+    private boolean fill() throws IOException {
+        while (chunk == null || position == chunk.length) {
+            if (eof) return false;
+            try {
+                chunk = stream.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading");
+            }
+            position = 0;
+            if (chunk == null) {
+                eof = true;
+                return false;
+            }
+        }
+        return true;
+    }
+}
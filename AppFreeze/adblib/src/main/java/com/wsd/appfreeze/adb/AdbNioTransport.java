@@ -0,0 +1,180 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 基于 NIO 的 ADB 传输层
+ *
+ * 读：事件循环在通道可读时把数据读入可复用的直接缓冲区，从中切分出完整报文后
+ * 解码到复用的消息对象和负载数组，依次交给 Receiver，一次系统调用可以处理多个报文。
+ * 写：调用方线程在锁内以聚集写直接非阻塞写出；内核发送缓冲区已满时把剩余数据
+ * 拷贝排队，并关注 OP_WRITE，由事件循环在可写时继续发送，调用方不会被阻塞。
+ */
+public class AdbNioTransport implements AdbTransport, AdbEventLoop.Handler {
+
+    private final AdbEventLoop loop;
+    private final SocketChannel channel;
+    /** 接收缓冲区：能容纳一个最大报文 */
+    private final ByteBuffer readBuffer = ByteBuffer
+            .allocateDirect(AdbProtocol.ADB_HEADER_LENGTH + AdbProtocol.CONNECT_MAXDATA)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    /** 事件循环复用的消息对象和负载数组 */
+    private final AdbProtocol.AdbMessage message = new AdbProtocol.AdbMessage();
+    private final byte[] payloadBuffer = new byte[AdbProtocol.CONNECT_MAXDATA];
+    /** 未能立即写出的数据 */
+    private final ArrayDeque<ByteBuffer> pendingWrites = new ArrayDeque<>();
+    private final AtomicBoolean closedNotified = new AtomicBoolean(false);
+    private volatile SelectionKey key;
+    private volatile Receiver receiver;
+
+    private AdbNioTransport(AdbEventLoop loop, SocketChannel channel) {
+        this.loop = loop;
+        this.channel = channel;
+    }
+
+    /** 连接到指定地址，并由 loop 负责后续读写 */
+    public static AdbNioTransport open(AdbEventLoop loop, InetSocketAddress address, int timeoutMs)
+            throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.socket().connect(address, timeoutMs);
+            channel.socket().setTcpNoDelay(true);
+            channel.configureBlocking(false);
+            return new AdbNioTransport(loop, channel);
+        } catch (IOException e) {
+            try { channel.close(); } catch (IOException ignored) { }
+            throw e;
+        }
+    }
+
+    @Override
+    public void start(Receiver receiver) {
+        if (this.receiver != null) throw new IllegalStateException("Already started");
+        this.receiver = receiver;
+        loop.register(channel, SelectionKey.OP_READ, this, new AdbEventLoop.RegisterCallback() {
+            @Override
+            public void onRegistered(SelectionKey registered) {
+                key = registered;
+                synchronized (pendingWrites) {
+                    if (!pendingWrites.isEmpty()) registered.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            }
+
+            @Override
+            public void onFailed(Exception cause) {
+                closeQuietly();
+            }
+        });
+    }
+
+    @Override
+    public void onReady(SelectionKey readyKey) {
+        try {
+            if (readyKey.isWritable()) flushPending();
+            if (readyKey.isValid() && readyKey.isReadable()) readFrames();
+        } catch (IOException | RuntimeException e) {
+            closeQuietly();
+        }
+    }
+
+    /** 读取可用数据并分发其中的完整报文 */
+    private void readFrames() throws IOException {
+        while (true) {
+            int n = channel.read(readBuffer);
+            if (n < 0) throw new IOException("Stream closed");
+            if (n == 0) return;
+
+            readBuffer.flip();
+            while (readBuffer.remaining() >= AdbProtocol.ADB_HEADER_LENGTH) {
+                int start = readBuffer.position();
+                int payloadLength = readBuffer.getInt(start + 12);
+                if (payloadLength < 0 || payloadLength > AdbProtocol.CONNECT_MAXDATA) {
+                    throw new IOException("Invalid payload length: " + payloadLength);
+                }
+                if (readBuffer.remaining() < AdbProtocol.ADB_HEADER_LENGTH + payloadLength) break;
+
+                AdbCodec.decodeHeader(readBuffer, message);
+                message.payload = payloadBuffer;
+                if (payloadLength != 0) readBuffer.get(payloadBuffer, 0, payloadLength);
+                receiver.onMessage(message);
+            }
+            readBuffer.compact();
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer[] buffers, int offset, int length, boolean flush) throws IOException {
+        synchronized (pendingWrites) {
+            if (!channel.isOpen()) throw new IOException("Transport closed");
+            if (pendingWrites.isEmpty()) {
+                channel.write(buffers, offset, length);
+            }
+            int remaining = 0;
+            for (int i = offset; i < offset + length; i++) remaining += buffers[i].remaining();
+            if (remaining == 0) return;
+
+            // 发送缓冲区已满：拷贝剩余数据排队（调用方会复用缓冲区），等待事件循环在可写时发送
+            ByteBuffer copy = ByteBuffer.allocate(remaining);
+            for (int i = offset; i < offset + length; i++) copy.put(buffers[i]);
+            copy.flip();
+            pendingWrites.add(copy);
+            if (pendingWrites.size() == 1) setWriteInterest(true);
+        }
+    }
+
+    /** 事件循环线程：通道可写时发送排队的数据 */
+    private void flushPending() throws IOException {
+        synchronized (pendingWrites) {
+            ByteBuffer buffer;
+            while ((buffer = pendingWrites.peek()) != null) {
+                channel.write(buffer);
+                if (buffer.hasRemaining()) return;
+                pendingWrites.poll();
+            }
+            setWriteInterest(false);
+        }
+    }
+
+    private void setWriteInterest(boolean enabled) {
+        loop.execute(() -> {
+            SelectionKey k = key;
+            if (k == null || !k.isValid()) return;
+            boolean pending;
+            synchronized (pendingWrites) {
+                pending = !pendingWrites.isEmpty();
+            }
+            k.interestOps(enabled && pending
+                    ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        });
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            notifyClosed();
+        }
+    }
+
+    private void closeQuietly() {
+        try { close(); } catch (IOException ignored) { }
+    }
+
+    private void notifyClosed() {
+        Receiver r = receiver;
+        if (r != null && closedNotified.compareAndSet(false, true)) r.onClosed();
+    }
+}
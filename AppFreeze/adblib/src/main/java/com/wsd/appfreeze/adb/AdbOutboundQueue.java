@@ -0,0 +1,217 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 连接的出站报文队列
+ *
+ * 所有线程（读线程回复 OKAY/AUTH、流的 WRTE/CLSE、打开流的 OPEN）只负责把报文放入队列，
+ * 同一时刻只有一个线程作为写者排空队列（抢到写者标志的调用方顺带完成写出，
+ * 无需额外的写线程），积压的报文合并为一次聚集写，减少系统调用和 TCP 分段，
+ * 同时保证报文不会交错。
+ *
+ * 小于 INLINE_PAYLOAD 的负载拷贝进报文自带的缓冲区，调用方立即返回；
+ * 较大的负载直接引用调用方数组，调用方等待写出完成后才返回。
+ */
+final class AdbOutboundQueue {
+
+    /** 拷贝进队列的负载上限，超过则引用调用方数组并同步等待 */
+    static final int INLINE_PAYLOAD = 1024;
+    /** 单次聚集写最多合并的报文数 */
+    private static final int MAX_BATCH = 32;
+    /** 空闲报文对象的缓存上限 */
+    private static final int MAX_POOLED = 64;
+
+    /** 一个待发送的报文，头部和小负载缓冲区随对象复用 */
+    private static final class Frame {
+        final ByteBuffer header = ByteBuffer.allocate(AdbProtocol.ADB_HEADER_LENGTH)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        byte[] inline;
+        ByteBuffer inlineBuffer;
+        /** 本次要写出的负载，null 表示无负载 */
+        ByteBuffer payload;
+        /** 调用方是否在等待写出完成 */
+        boolean waiting;
+        boolean done;
+        IOException error;
+    }
+
+    private final AdbTransport transport;
+    private final ConcurrentLinkedQueue<Frame> queue = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Frame> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final AtomicBoolean writing = new AtomicBoolean();
+    /** 以下两个数组只由当前写者访问 */
+    private final Frame[] batch = new Frame[MAX_BATCH];
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_BATCH * 2];
+    private volatile IOException failure;
+
+    AdbOutboundQueue(AdbTransport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * 发送一个报文
+     * 队列空闲时当前线程直接写出（连同其他线程积压的报文）；否则交给当前写者。
+     * 大负载报文会等待写出完成，保证返回后调用方可以修改数组。
+     */
+    void send(int cmd, int arg0, int arg1, byte[] payload, int offset, int length, boolean checksum)
+            throws IOException {
+        IOException failed = failure;
+        if (failed != null) throw failed;
+
+        Frame frame = obtain();
+        frame.header.clear();
+        AdbCodec.encodeHeader(frame.header, cmd, arg0, arg1, payload, offset, length, checksum);
+        frame.header.flip();
+        if (length == 0) {
+            frame.payload = null;
+        } else if (length <= INLINE_PAYLOAD) {
+            if (frame.inline == null) {
+                frame.inline = new byte[INLINE_PAYLOAD];
+                frame.inlineBuffer = ByteBuffer.wrap(frame.inline);
+            }
+            System.arraycopy(payload, offset, frame.inline, 0, length);
+            frame.inlineBuffer.clear().limit(length);
+            frame.payload = frame.inlineBuffer;
+        } else {
+            frame.payload = ByteBuffer.wrap(payload, offset, length);
+            frame.waiting = true;
+        }
+
+        boolean waiting = frame.waiting;
+        queue.add(frame);
+        drain();
+        if (waiting) awaitWritten(frame);
+    }
+
+    /** 连接关闭后拒绝新报文，并让等待中的调用方失败 */
+    void fail(IOException cause) {
+        if (failure == null) failure = cause;
+        // 与 drain() 相同，释放写者标志后再检查一次：清空队列后、释放标志前入队的报文，
+        // 其发送方抢不到写者标志，只能由这里处理；正在写的写者会在结束时处理剩余报文
+        while (!queue.isEmpty() && writing.compareAndSet(false, true)) {
+            try {
+                failQueued(failure);
+            } finally {
+                writing.set(false);
+            }
+        }
+    }
+
+    /**
+     * 抢占写者身份并排空队列，释放后再检查一次，避免遗漏刚入队的报文
+     * 写出失败时同样继续检查，让失败后入队的报文也以失败完成，不会无人处理
+     */
+    private void drain() throws IOException {
+        IOException error = null;
+        while (!queue.isEmpty() && writing.compareAndSet(false, true)) {
+            try {
+                IOException failed = failure;
+                if (failed != null) {
+                    failQueued(failed);
+                    error = failed;
+                } else {
+                    writeQueued();
+                }
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                writing.set(false);
+            }
+        }
+        if (error != null) throw error;
+    }
+
+    /** 按批次合并写出队列中的报文，最后一批写出后刷新 */
+    private void writeQueued() throws IOException {
+        Frame frame;
+        while ((frame = queue.poll()) != null) {
+            int frames = 0;
+            int buffers = 0;
+            do {
+                batch[frames++] = frame;
+                gather[buffers++] = frame.header;
+                if (frame.payload != null) gather[buffers++] = frame.payload;
+            } while (frames < MAX_BATCH && (frame = queue.poll()) != null);
+
+            IOException error = null;
+            try {
+                // 只有写者会取出报文，队列非空说明还有下一批，留到最后再刷新
+                transport.write(gather, 0, buffers, queue.isEmpty());
+            } catch (IOException e) {
+                error = e;
+                if (failure == null) failure = e;
+            }
+            for (int i = 0; i < buffers; i++) gather[i] = null;
+            for (int i = 0; i < frames; i++) {
+                complete(batch[i], error);
+                batch[i] = null;
+            }
+            if (error != null) {
+                failQueued(error);
+                throw error;
+            }
+        }
+    }
+
+    private void failQueued(IOException cause) {
+        Frame frame;
+        while ((frame = queue.poll()) != null) complete(frame, cause);
+    }
+
+    private void complete(Frame frame, IOException error) {
+        if (frame.waiting) {
+            synchronized (frame) {
+                frame.error = error;
+                frame.done = true;
+                frame.notifyAll();
+            }
+        } else {
+            recycle(frame);
+        }
+    }
+
+    private void awaitWritten(Frame frame) throws IOException {
+        IOException error;
+        boolean interrupted = false;
+        synchronized (frame) {
+            // 负载仍被队列引用，必须等到写出或失败才能返回
+            while (!frame.done) {
+                try {
+                    frame.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            error = frame.error;
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        recycle(frame);
+        if (error != null) throw error;
+    }
+
+    private Frame obtain() {
+        Frame frame = pool.poll();
+        if (frame == null) return new Frame();
+        pooled.decrementAndGet();
+        return frame;
+    }
+
+    private void recycle(Frame frame) {
+        frame.payload = null;
+        frame.waiting = false;
+        frame.done = false;
+        frame.error = null;
+        // 计数只是近似上限，并发时偶尔多缓存几个无妨
+        if (pooled.get() < MAX_POOLED) {
+            pooled.incrementAndGet();
+            pool.offer(frame);
+        }
+    }
+}
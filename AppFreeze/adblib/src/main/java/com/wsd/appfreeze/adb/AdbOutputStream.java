@@ -0,0 +1,80 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * AdbStream 的 OutputStream 视图
+ * 小块写入先合并到缓冲区，满一个报文或 flush() 时以一个 WRTE 发送；
+ * 不小于缓冲区的写入直接发送，不经过拷贝
+ */
+final class AdbOutputStream extends OutputStream {
+
+    private final AdbStream stream;
+    private final byte[] buffer;
+    private int count;
+    private boolean closed;
+
+    AdbOutputStream(AdbStream stream, int bufferSize) {
+        this.stream = stream;
+        this.buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (count == buffer.length) flushBuffer();
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+        if (len >= buffer.length) {
+            flushBuffer();
+            send(b, off, len);
+            return;
+        }
+        if (len > buffer.length - count) flushBuffer();
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        flushBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        try {
+            if (!stream.isClosed()) flushBuffer();
+        } finally {
+            closed = true;
+            stream.close();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count == 0) return;
+        send(buffer, 0, count);
+        count = 0;
+    }
+
+    private void send(byte[] b, int off, int len) throws IOException {
+        try {
+            stream.write(b, off, len);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing");
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) throw new IOException("Stream closed");
+    }
+}
@@ -0,0 +1,111 @@
+package com.wsd.appfreeze.adb;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流水线命令执行器
+ *
+ * ADB 协议在同一条连接上以 local id 区分多个流。本类同时发出最多 window 个
+ * OPEN 请求，不等待上一条命令结束；命令完成（远端 CLSE）的顺序即收集结果的顺序，
+ * 每完成一条就补发下一条。40 条 force-stop 只需约一次往返时间，而不是 40 次。
+ *
+ * window 为 1 时退化为逐条串行执行。
+ *
+ * 每条命令通过 AdbConnection.execute() 异步执行，输出在连接读线程上随收随取，
+ * 调用线程只负责补发命令和等待完成通知。
+ */
+public class AdbPipelinedExecutor {
+
+    /** 默认同时在途的流数量 */
+    public static final int DEFAULT_WINDOW = 8;
+
+    private final AdbConnection connection;
+    private final int window;
+
+    public AdbPipelinedExecutor(AdbConnection connection, int window) {
+        if (window < 1) throw new IllegalArgumentException("window must be >= 1");
+        this.connection = connection;
+        this.window = window;
+    }
+
+    /**
+     * 以流水线方式执行一组 shell 命令
+     *
+     * @param commands shell 命令（不含 "shell:" 前缀）
+     * @return 与 commands 顺序一致的执行结果
+     */
+    public List<CommandResult> execute(List<String> commands) throws InterruptedException {
+        return execute(commands, Deadline.NONE);
+    }
+
+    /**
+     * 在截止时间内以流水线方式执行一组 shell 命令
+     * 超时后取消仍在执行的命令（关闭流），未完成和未发出的命令结果为 "Timed out"
+     *
+     * @param commands shell 命令（不含 "shell:" 前缀）
+     * @param deadline 整组命令的截止时间
+     * @return 与 commands 顺序一致的执行结果
+     */
+    public List<CommandResult> execute(List<String> commands, Deadline deadline) throws InterruptedException {
+        int n = commands.size();
+        CommandResult[] results = new CommandResult[n];
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        CompletableFuture<CommandResult>[] futures = new CompletableFuture[n];
+        // 已完成命令的序号，由读线程放入
+        BlockingQueue<Integer> completions = new LinkedBlockingQueue<>();
+
+        int next = 0;
+        int inFlight = 0;
+        while (next < n || inFlight > 0) {
+            // 填满在途窗口
+            while (inFlight < window && next < n && !deadline.isExpired()) {
+                final int index = next++;
+                futures[index] = connection.execute(commands.get(index), connection.getDefaultShellMode(), deadline);
+                futures[index].whenComplete((result, error) -> completions.add(index));
+                inFlight++;
+            }
+            if (inFlight == 0) break;
+
+            // 按完成顺序收集结果
+            long remaining = deadline.remainingMillis();
+            Integer index;
+            try {
+                index = remaining == Long.MAX_VALUE ? completions.take()
+                        : completions.poll(remaining, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // 调用方取消：关闭所有在途的流
+                for (CompletableFuture<CommandResult> future : futures) {
+                    if (future != null) future.cancel(false);
+                }
+                throw e;
+            }
+            if (index == null) break;
+            inFlight--;
+            CommandResult result = futures[index].getNow(null);
+            results[index] = result;
+            if (result != null && !result.isSuccess() && !connection.isConnected()) {
+                // 连接已断开，剩余命令直接判定失败
+                for (; next < n; next++) {
+                    results[next] = CommandResult.failed(commands.get(next), 0, "Connection lost");
+                }
+            }
+        }
+
+        // 超时退出时取消仍在执行的命令，未发出的命令同样判定超时
+        for (int i = 0; i < n; i++) {
+            if (results[i] != null) continue;
+            CompletableFuture<CommandResult> future = futures[i];
+            if (future != null && !future.cancel(false)) {
+                results[i] = future.getNow(null);
+                continue;
+            }
+            results[i] = CommandResult.failed(commands.get(i), 0, "Timed out");
+        }
+        return Arrays.asList(results);
+    }
+}
@@ -0,0 +1,127 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * ADB 协议实现
+ * 处理 ADB 消息的生成、解析和校验
+ * 基于 cgutman/AdbLib 开源库（Apache 2.0 许可证）
+ */
+public class AdbProtocol {
+
+    /** ADB 消息头长度（24字节） */
+    public static final int ADB_HEADER_LENGTH = 24;
+
+    /** 连接命令 */
+    public static final int CMD_CNXN = 0x4e584e43;
+    /** 认证命令 */
+    public static final int CMD_AUTH = 0x48545541;
+    /** 打开流命令 */
+    public static final int CMD_OPEN = 0x4e45504f;
+    /** 确认命令 */
+    public static final int CMD_OKAY = 0x59414b4f;
+    /** 关闭流命令 */
+    public static final int CMD_CLSE = 0x45534c43;
+    /** 写入数据命令 */
+    public static final int CMD_WRTE = 0x45545257;
+
+    /** 最初的 ADB 协议版本：每个报文都需要负载校验和 */
+    public static final int VERSION_MIN = 0x01000000;
+    /** 双方版本都不低于此值时，报文不再携带和校验负载校验和 */
+    public static final int VERSION_SKIP_CHECKSUM = 0x01000001;
+    /** 本端声明的协议版本 */
+    public static final int CONNECT_VERSION = VERSION_SKIP_CHECKSUM;
+    /** 本端声明的最大数据负载（远端发来的单个报文不会超过此值） */
+    public static final int CONNECT_MAXDATA = 256 * 1024;
+    /** 旧版 adbd 的最大数据负载，远端未声明时按此值拆分 */
+    public static final int MAXDATA_LEGACY = 4096;
+
+    /** 认证类型：SHA1 令牌 */
+    public static final int AUTH_TYPE_TOKEN = 1;
+    /** 认证类型：签名 */
+    public static final int AUTH_TYPE_SIGNATURE = 2;
+    /** 认证类型：RSA 公钥 */
+    public static final int AUTH_TYPE_RSA_PUBLIC = 3;
+
+    /** 特性：shell v2 协议（区分标准输出/标准错误，回传退出码） */
+    public static final String FEATURE_SHELL_V2 = "shell_v2";
+    /** 特性：设备支持 cmd 命令 */
+    public static final String FEATURE_CMD = "cmd";
+
+    /** 连接消息负载，声明本端支持的特性 */
+    public static byte[] CONNECT_PAYLOAD;
+    static {
+        try {
+            CONNECT_PAYLOAD = ("host::features=" + FEATURE_SHELL_V2 + "," + FEATURE_CMD + "\0").getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) { }
+    }
+
+    /**
+     * 解析 CNXN 负载中的特性列表
+     * 格式为 "device::key1=value1;key2=value2;features=a,b,c"，旧版 adbd 没有 features 字段
+     */
+    static Set<String> parseFeatures(byte[] payload, int length) {
+        String banner = new String(payload, 0, length, StandardCharsets.UTF_8);
+        int nul = banner.indexOf('\0');
+        if (nul >= 0) banner = banner.substring(0, nul);
+        int props = banner.indexOf("::");
+        if (props < 0) return Collections.emptySet();
+        for (String prop : banner.substring(props + 2).split(";")) {
+            if (!prop.startsWith("features=")) continue;
+            Set<String> features = new HashSet<>();
+            for (String feature : prop.substring("features=".length()).split(",")) {
+                if (!feature.isEmpty()) features.add(feature);
+            }
+            return Collections.unmodifiableSet(features);
+        }
+        return Collections.emptySet();
+    }
+
+    /**
+     * 验证 ADB 消息的有效性
+     *
+     * @param checksum 是否校验负载校验和（协商版本不低于 VERSION_SKIP_CHECKSUM 时无需校验）
+     */
+    public static boolean validateMessage(AdbMessage msg, boolean checksum) {
+        if (msg.command != (msg.magic ^ 0xFFFFFFFF))
+            return false;
+        if (checksum && msg.payloadLength != 0) {
+            if (AdbCodec.checksum(msg.payload, 0, msg.payloadLength) != msg.checksum)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * 生成完整的 ADB 消息（报文头 + 负载，计算校验和），只用于连接之外的一次性发送（如端口探测）
+     * 连接上的报文由 AdbOutboundQueue 经 AdbCodec 编码
+     */
+    public static byte[] generateMessage(int cmd, int arg0, int arg1, byte[] payload) {
+        int length = payload != null ? payload.length : 0;
+        ByteBuffer message = ByteBuffer.allocate(ADB_HEADER_LENGTH + length).order(ByteOrder.LITTLE_ENDIAN);
+        AdbCodec.encodeHeader(message, cmd, arg0, arg1, payload, 0, length, true);
+        if (payload != null) message.put(payload);
+        return message.array();
+    }
+
+    /**
+     * ADB 消息结构
+     * 传输层解码时会复用消息对象和负载数组：payload 的长度可能大于 payloadLength，
+     * 接收方只能在回调期间读取前 payloadLength 个字节。
+     */
+    public static final class AdbMessage {
+        public int command;
+        public int arg0;
+        public int arg1;
+        public int payloadLength;
+        public int checksum;
+        public int magic;
+        public byte[] payload;
+    }
+}
@@ -0,0 +1,64 @@
+package com.wsd.appfreeze.adb;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 流的有界接收缓冲区
+ *
+ * 单生产者（连接读线程）/单消费者（读取流的线程）的无锁环形队列，
+ * 槽位保存收到的 WRTE 负载。除槽位数外还限制缓存的总字节数，
+ * AdbStream 据此决定是否立即回复 OKAY，从而把内存占用限制在窗口之内。
+ */
+final class AdbReceiveBuffer {
+
+    private final byte[][] slots;
+    private final int mask;
+    private final int windowBytes;
+    private final AtomicInteger bufferedBytes = new AtomicInteger();
+    /** 下一个读取位置，只由消费者修改 */
+    private volatile long head;
+    /** 下一个写入位置，只由生产者修改 */
+    private volatile long tail;
+
+    /**
+     * @param slotCount 槽位数，必须为 2 的幂
+     * @param windowBytes 缓存字节数上限
+     */
+    AdbReceiveBuffer(int slotCount, int windowBytes) {
+        if (Integer.bitCount(slotCount) != 1) throw new IllegalArgumentException("slotCount must be a power of 2");
+        this.slots = new byte[slotCount][];
+        this.mask = slotCount - 1;
+        this.windowBytes = windowBytes;
+    }
+
+    /** 生产者放入一段数据，槽位已满时返回 false */
+    boolean offer(byte[] data) {
+        long t = tail;
+        if (t - head == slots.length) return false;
+        slots[(int) t & mask] = data;
+        bufferedBytes.addAndGet(data.length);
+        tail = t + 1;
+        return true;
+    }
+
+    /** 消费者取出一段数据，为空时返回 null */
+    byte[] poll() {
+        long h = head;
+        if (h == tail) return null;
+        int index = (int) h & mask;
+        byte[] data = slots[index];
+        slots[index] = null;
+        head = h + 1;
+        bufferedBytes.addAndGet(-data.length);
+        return data;
+    }
+
+    boolean isEmpty() {
+        return head == tail;
+    }
+
+    /** 是否还能再容纳一个 frameSize 大小的报文 */
+    boolean hasRoom(int frameSize) {
+        return tail - head < slots.length && bufferedBytes.get() + frameSize <= windowBytes;
+    }
+}
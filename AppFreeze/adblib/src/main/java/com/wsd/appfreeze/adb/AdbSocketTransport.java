@@ -0,0 +1,122 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 基于阻塞 socket 的 ADB 传输层
+ * 每个连接一个读线程，调用方线程直接写 socket。
+ * 输出经过缓冲：报文头与小负载在 flush 时合并为一次系统调用，大负载直接写出。
+ * NIO 不可用时的兼容方案。
+ */
+public class AdbSocketTransport implements AdbTransport {
+
+    private static final int OUTPUT_BUFFER_SIZE = 8192;
+
+    private final Socket socket;
+    private final InputStream inputStream;
+    private final OutputStream outputStream;
+    private final AtomicBoolean closedNotified = new AtomicBoolean(false);
+    /** 读线程复用的报文头缓冲区和消息对象 */
+    private final ByteBuffer header = ByteBuffer.allocate(AdbProtocol.ADB_HEADER_LENGTH)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    private final AdbProtocol.AdbMessage message = new AdbProtocol.AdbMessage();
+    /** 写出直接缓冲区时使用的中转数组 */
+    private byte[] transferBuffer;
+    private Thread readerThread;
+    private volatile Receiver receiver;
+
+    public AdbSocketTransport(Socket socket) throws IOException {
+        this.socket = socket;
+        this.inputStream = socket.getInputStream();
+        this.outputStream = new BufferedOutputStream(socket.getOutputStream(), OUTPUT_BUFFER_SIZE);
+        socket.setTcpNoDelay(true);
+    }
+
+    /** 连接到指定地址 */
+    public static AdbSocketTransport open(InetSocketAddress address, int timeoutMs) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(address, timeoutMs);
+            return new AdbSocketTransport(socket);
+        } catch (IOException e) {
+            try { socket.close(); } catch (IOException ignored) { }
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void start(Receiver receiver) {
+        if (readerThread != null) throw new IllegalStateException("Already started");
+        this.receiver = receiver;
+        readerThread = new Thread(this::readLoop, "AdbSocketTransport");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    private void readLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                AdbCodec.readMessage(inputStream, header, message);
+                receiver.onMessage(message);
+            } catch (Exception e) {
+                break;
+            }
+        }
+        try { socket.close(); } catch (IOException ignored) { }
+        notifyClosed();
+    }
+
+    @Override
+    public void write(ByteBuffer[] buffers, int offset, int length, boolean flush) throws IOException {
+        synchronized (outputStream) {
+            for (int i = offset; i < offset + length; i++) {
+                ByteBuffer buffer = buffers[i];
+                if (buffer.hasArray()) {
+                    outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                    buffer.position(buffer.limit());
+                } else {
+                    if (transferBuffer == null) transferBuffer = new byte[OUTPUT_BUFFER_SIZE];
+                    while (buffer.hasRemaining()) {
+                        int n = Math.min(transferBuffer.length, buffer.remaining());
+                        buffer.get(transferBuffer, 0, n);
+                        outputStream.write(transferBuffer, 0, n);
+                    }
+                }
+            }
+            if (flush) outputStream.flush();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !socket.isClosed();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+        Thread thread;
+        synchronized (this) {
+            thread = readerThread;
+        }
+        if (thread == null) {
+            notifyClosed();
+        } else if (thread != Thread.currentThread()) {
+            thread.interrupt();
+            try { thread.join(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        }
+    }
+
+    private void notifyClosed() {
+        Receiver r = receiver;
+        if (r != null && closedNotified.compareAndSet(false, true)) r.onClosed();
+    }
+}
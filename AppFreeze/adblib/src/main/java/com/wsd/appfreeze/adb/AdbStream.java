@@ -0,0 +1,271 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ADB 数据流抽象
+ * 基于 cgutman/AdbLib 开源库（Apache 2.0 许可证）
+ *
+ * 接收端使用有界缓冲区实现流量控制：ADB 协议中远端每发送一个 WRTE 都要等待本端 OKAY，
+ * 缓存的数据超过接收窗口时暂不回复 OKAY，等读取方取走数据后再补发，
+ * 读取大量输出时内存占用保持在窗口大小以内。
+ * read()/poll() 只能由一个线程调用。
+ */
+public class AdbStream implements Closeable {
+
+    /** 接收缓冲区槽位数（缓存的 WRTE 报文个数上限） */
+    static final int RECEIVE_SLOTS = 64;
+    /** 接收窗口下限，单报文上限较小时（旧版协议）仍允许缓存多个报文 */
+    static final int MIN_RECEIVE_WINDOW = 64 * 1024;
+
+    /** 流事件回调（在连接读线程上调用，不应阻塞） */
+    public interface Listener {
+        /** 收到数据，可在回调中用 poll() 取出 */
+        default void onData(AdbStream stream) {
+        }
+
+        /** 流已关闭（远端关闭、本地关闭或连接断开） */
+        void onClose(AdbStream stream);
+    }
+
+    private AdbConnection adbConn;
+    private int localId;
+    private int remoteId;
+    private AtomicBoolean writeReady;
+    private final AdbReceiveBuffer receiveBuffer;
+    /** 远端单个 WRTE 报文的最大长度（协商值） */
+    private final int maxFrame;
+    /** 已收到 WRTE 但尚未回复 OKAY */
+    private final AtomicBoolean ackPending = new AtomicBoolean();
+    private final Object readLock = new Object();
+    private volatile boolean readerWaiting;
+    private volatile boolean isClosed;
+    private volatile boolean opened;
+    private volatile boolean closedByRemote;
+    private volatile Listener listener;
+    /** 单次读写操作的超时，0 表示不限 */
+    private volatile long timeoutMs;
+    /** 所有读写操作共同的截止时间 */
+    private volatile Deadline deadline = Deadline.NONE;
+    private InputStream inputStream;
+    private OutputStream outputStream;
+
+    public AdbStream(AdbConnection adbConn, int localId) {
+        this.adbConn = adbConn;
+        this.localId = localId;
+        this.maxFrame = adbConn.getNegotiatedMaxData();
+        this.receiveBuffer = new AdbReceiveBuffer(RECEIVE_SLOTS, Math.max(2 * maxFrame, MIN_RECEIVE_WINDOW));
+        this.writeReady = new AtomicBoolean(false);
+        this.isClosed = false;
+    }
+
+    /**
+     * 收到远端数据（payload 会被传输层复用，须拷贝前 length 个字节）
+     * 缓冲区还能容纳下一个报文时立即回复 OKAY，否则等读取方取走数据后再回复
+     */
+    void onPayload(byte[] payload, int length) throws IOException {
+        byte[] data = new byte[length];
+        System.arraycopy(payload, 0, data, 0, length);
+        // 远端未等待 OKAY 就继续发送，违反协议
+        if (!receiveBuffer.offer(data)) throw new IOException("Receive window overflow");
+        if (readerWaiting) {
+            synchronized (readLock) { readLock.notifyAll(); }
+        }
+        Listener l = listener;
+        if (l != null) l.onData(this);
+
+        // 先标记待回复再检查空间，与读取方的检查配合，保证 OKAY 恰好发送一次
+        ackPending.set(true);
+        releaseWindow();
+    }
+
+    /** 接收缓冲区有空间且有待回复的 WRTE 时发送 OKAY */
+    private void releaseWindow() throws IOException {
+        if (receiveBuffer.hasRoom(maxFrame) && ackPending.compareAndSet(true, false) && !isClosed) {
+            adbConn.writeMessage(AdbProtocol.CMD_OKAY, localId, remoteId, null, 0, 0);
+        }
+    }
+
+    /**
+     * 设置单次读写的超时（类似 Socket.setSoTimeout），0 表示不限
+     * 超时抛出 SocketTimeoutException，流保持打开，调用方可以重试或关闭
+     */
+    public void setTimeout(long timeoutMs) {
+        this.timeoutMs = Math.max(0, timeoutMs);
+    }
+
+    /** 设置读写操作的截止时间（例如整轮操作的时间预算），与单次超时同时生效 */
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline != null ? deadline : Deadline.NONE;
+    }
+
+    /** 本次阻塞操作的截止时间：单次超时与整体截止时间中较早者 */
+    private Deadline operationDeadline() {
+        long timeout = timeoutMs;
+        return timeout > 0 ? deadline.min(timeout) : deadline;
+    }
+
+    int getLocalId() {
+        return localId;
+    }
+
+    void updateRemoteId(int remoteId) {
+        this.remoteId = remoteId;
+        this.opened = true;
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    void readyForWrite() {
+        writeReady.set(true);
+    }
+
+    /** 远端发送 CLSE：命令执行完毕或拒绝打开 */
+    void notifyRemoteClose() {
+        closedByRemote = true;
+        notifyClose();
+    }
+
+    /** 标记流已关闭并唤醒等待者，返回 false 表示此前已关闭 */
+    boolean notifyClose() {
+        synchronized (this) {
+            if (isClosed) return false;
+            isClosed = true;
+            notifyAll();
+        }
+        synchronized (readLock) { readLock.notifyAll(); }
+        Listener l = listener;
+        if (l != null) l.onClose(this);
+        return true;
+    }
+
+    /**
+     * 读取远端发送的数据
+     * 流关闭后仍可读出已缓存的数据，缓存读完后抛出 IOException；
+     * 超过 setTimeout()/setDeadline() 的限制时抛出 SocketTimeoutException
+     */
+    public byte[] read() throws InterruptedException, IOException {
+        byte[] data = take();
+        if (data == null) throw new IOException("Stream closed");
+        return data;
+    }
+
+    /** 阻塞读取，流已关闭且缓存读完时返回 null */
+    byte[] take() throws InterruptedException, IOException {
+        byte[] data = receiveBuffer.poll();
+        if (data == null) {
+            Deadline d = operationDeadline();
+            synchronized (readLock) {
+                readerWaiting = true;
+                try {
+                    while ((data = receiveBuffer.poll()) == null) {
+                        if (isClosed) return null;
+                        d.await(readLock, "Stream read");
+                    }
+                } finally {
+                    readerWaiting = false;
+                }
+            }
+        }
+        releaseWindow();
+        return data;
+    }
+
+    /**
+     * 非阻塞读取，没有缓存数据时返回 null
+     * 可在 Listener.onData 中调用，及时取走数据以免阻塞远端发送
+     */
+    public byte[] poll() throws IOException {
+        byte[] data = receiveBuffer.poll();
+        if (data != null) releaseWindow();
+        return data;
+    }
+
+    /** 发送字符串数据 */
+    public void write(String payload) throws IOException, InterruptedException {
+        write(payload.getBytes("UTF-8"), false);
+        write(new byte[]{0}, true);
+    }
+
+    /** 发送字节数组数据 */
+    public void write(byte[] payload) throws IOException, InterruptedException {
+        write(payload, true);
+    }
+
+    /**
+     * 发送数据，超过协商的单报文上限时拆分为多个 WRTE 报文
+     * 每个 WRTE 需要等待远端 OKAY 后才能发送下一个
+     * flush 仅为兼容保留：出站队列排空时总会刷新，积压的报文自动合并写出
+     */
+    public void write(byte[] payload, boolean flush) throws IOException, InterruptedException {
+        write(payload, 0, payload.length);
+    }
+
+    /** 发送数组中 [offset, offset + length) 范围的数据 */
+    public void write(byte[] payload, int offset, int length) throws IOException, InterruptedException {
+        int maxData = adbConn.getMaxData();
+        int end = offset + length;
+        do {
+            int len = Math.min(maxData, end - offset);
+            writeFrame(payload, offset, len);
+            offset += len;
+        } while (offset < end);
+    }
+
+    /**
+     * 以 InputStream 形式读取远端数据（每次调用返回同一个对象）
+     * 流关闭且缓存读完后返回 -1；关闭 InputStream 会关闭本流
+     */
+    public synchronized InputStream getInputStream() {
+        if (inputStream == null) inputStream = new AdbInputStream(this);
+        return inputStream;
+    }
+
+    /**
+     * 以 OutputStream 形式向远端写数据（每次调用返回同一个对象）
+     * 写入的数据先缓存，满一个报文或 flush() 时发送；关闭 OutputStream 会关闭本流
+     */
+    public synchronized OutputStream getOutputStream() {
+        if (outputStream == null) outputStream = new AdbOutputStream(this, adbConn.getNegotiatedMaxData());
+        return outputStream;
+    }
+
+    private void writeFrame(byte[] payload, int offset, int length) throws IOException, InterruptedException {
+        Deadline d = operationDeadline();
+        synchronized (this) {
+            while (!isClosed && !writeReady.compareAndSet(true, false))
+                d.await(this, "Stream write");
+            if (isClosed) throw new IOException("Stream closed");
+        }
+        adbConn.writeMessage(AdbProtocol.CMD_WRTE, localId, remoteId, payload, offset, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!notifyClose()) return;
+        // 尚未收到 OKAY 时保留登记，远端迟到的 OKAY 或 CLSE 到达后再移除
+        if (!opened) return;
+        adbConn.unregister(this);
+        adbConn.writeMessage(AdbProtocol.CMD_CLSE, localId, remoteId, null, 0, 0);
+    }
+
+    public boolean isClosed() {
+        return isClosed;
+    }
+
+    /** 是否已收到远端的 OKAY（流已成功打开） */
+    public boolean isOpened() {
+        return opened;
+    }
+
+    /** 是否由远端关闭（区别于本地关闭或连接断开） */
+    public boolean isClosedByRemote() {
+        return closedByRemote;
+    }
+}
@@ -0,0 +1,86 @@
+package com.wsd.appfreeze.adb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/**
+ * 连接上已打开流的登记表，以 int 类型的 local id 为键
+ *
+ * local id 由本表分配：跳过槽位（id & mask）已被占用的 id，因此每个流独占一个槽位，
+ * 查找只需一次数组访问并核对 id，读线程按报文分发时无锁、无装箱。
+ * 分配和删除在锁内进行；负载超过一半时容量翻倍，新数组填好后再发布。
+ */
+final class AdbStreamTable {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private volatile AtomicReferenceArray<AdbStream> slots = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    /** 以下字段由 this 的锁保护 */
+    private int size;
+    private int nextId = 1;
+
+    /** 按 local id 查找流，不存在时返回 null（无锁） */
+    AdbStream get(int localId) {
+        AtomicReferenceArray<AdbStream> table = slots;
+        AdbStream stream = table.get(localId & (table.length() - 1));
+        return stream != null && stream.getLocalId() == localId ? stream : null;
+    }
+
+    /** 分配一个新的 local id，用它创建流并登记 */
+    synchronized AdbStream add(IntFunction<AdbStream> factory) {
+        AtomicReferenceArray<AdbStream> table = slots;
+        if ((size + 1) * 2 > table.length()) table = grow(table);
+        int mask = table.length() - 1;
+        int id;
+        do {
+            id = nextId;
+            // id 为正数且不为 0（0 在协议中表示未分配）
+            nextId = id == Integer.MAX_VALUE ? 1 : id + 1;
+        } while (table.get(id & mask) != null);
+        AdbStream stream = factory.apply(id);
+        table.set(id & mask, stream);
+        size++;
+        return stream;
+    }
+
+    /** 删除指定 id 的流，返回被删除的流（不存在时返回 null） */
+    synchronized AdbStream remove(int localId) {
+        AtomicReferenceArray<AdbStream> table = slots;
+        int index = localId & (table.length() - 1);
+        AdbStream stream = table.get(index);
+        if (stream == null || stream.getLocalId() != localId) return null;
+        table.set(index, null);
+        size--;
+        return stream;
+    }
+
+    /** 删除并返回所有流 */
+    synchronized List<AdbStream> removeAll() {
+        AtomicReferenceArray<AdbStream> table = slots;
+        List<AdbStream> removed = new ArrayList<>(size);
+        for (int i = 0; i < table.length(); i++) {
+            AdbStream stream = table.getAndSet(i, null);
+            if (stream != null) removed.add(stream);
+        }
+        size = 0;
+        return removed;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /** 容量翻倍：旧表中槽位不同的 id 在新表中槽位也不同，直接搬移即可 */
+    private AtomicReferenceArray<AdbStream> grow(AtomicReferenceArray<AdbStream> table) {
+        AtomicReferenceArray<AdbStream> grown = new AtomicReferenceArray<>(table.length() * 2);
+        int mask = grown.length() - 1;
+        for (int i = 0; i < table.length(); i++) {
+            AdbStream stream = table.get(i);
+            if (stream != null) grown.set(stream.getLocalId() & mask, stream);
+        }
+        slots = grown;
+        return grown;
+    }
+}
@@ -0,0 +1,42 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * ADB 传输层接口
+ * 负责把完整的 ADB 报文写到对端，并把收到的报文按顺序交给 Receiver 处理。
+ *
+ * 实现：
+ * - AdbNioTransport：SocketChannel + Selector，多个连接共享一个事件循环线程
+ * - AdbSocketTransport：阻塞 socket，每个连接一个读线程（兼容方案）
+ */
+public interface AdbTransport extends Closeable {
+
+    /** 报文接收回调，同一传输层上的回调不会并发执行 */
+    interface Receiver {
+        /**
+         * 收到一个完整报文；抛出异常将关闭传输层
+         * msg 及其负载数组会被传输层复用，回调返回后不能再访问
+         */
+        void onMessage(AdbProtocol.AdbMessage msg) throws IOException;
+
+        /** 传输层已关闭（对端断开、读写出错或本端关闭），只回调一次 */
+        void onClosed();
+    }
+
+    /** 开始接收报文 */
+    void start(Receiver receiver) throws IOException;
+
+    /**
+     * 聚集写：依次写出 buffers[offset, offset + length) 的全部剩余数据，不拼接拷贝
+     * 多线程调用时保证同一次调用的数据不与其他调用交错；返回后调用方可以复用这些缓冲区。
+     *
+     * @param flush 是否立即发送（阻塞实现中用于合并多个小报文）
+     */
+    void write(ByteBuffer[] buffers, int offset, int length, boolean flush) throws IOException;
+
+    /** 传输层是否仍然打开 */
+    boolean isOpen();
+}
@@ -0,0 +1,18 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.IOException;
+
+/**
+ * adbd 未授权本端密钥
+ *
+ * 非交互连接在签名被拒绝时立即抛出，或在已知未授权时不发起握手直接抛出，
+ * 而不是发送公钥并等待无人确认的授权弹窗。调用方据此提示用户打开应用完成授权。
+ */
+public class AdbUnauthorizedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public AdbUnauthorizedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,44 @@
+package com.wsd.appfreeze.adb;
+
+/**
+ * 自适应轮询间隔
+ *
+ * 一次轮询没有发现目标或失败（如连接不可用）时间隔翻倍（不超过上限），发现目标时立即收紧到下限。
+ * 长时间无事发生或连接一直不可用时轮询次数按对数增长，几乎不产生开销。
+ */
+public final class BackoffInterval {
+
+    private final long minMs;
+    private final long maxMs;
+    private long currentMs;
+
+    public BackoffInterval(long minMs, long maxMs) {
+        this.minMs = Math.max(1, minMs);
+        this.maxMs = Math.max(this.minMs, maxMs);
+        this.currentMs = this.minMs;
+    }
+
+    /** 回到下限，返回新的间隔 */
+    public synchronized long reset() {
+        currentMs = minMs;
+        return currentMs;
+    }
+
+    /**
+     * 按本次轮询的结果计算下一次间隔
+     *
+     * @param found 发现的目标数，小于 0 表示轮询失败
+     */
+    public synchronized long next(int found) {
+        if (found > 0) {
+            currentMs = minMs;
+        } else {
+            currentMs = Math.min(maxMs, currentMs * 2);
+        }
+        return currentMs;
+    }
+
+    public synchronized long getInterval() {
+        return currentMs;
+    }
+}
@@ -0,0 +1,87 @@
+package com.wsd.appfreeze.adb;
+
+/**
+ * 单条 ADB 命令的执行结果
+ */
+public final class CommandResult {
+
+    /** 退出码未知（普通 shell: 流和 exec: 流不回传退出码） */
+    public static final int EXIT_CODE_UNKNOWN = Integer.MIN_VALUE;
+
+    private final String command;
+    private final int exitCode;
+    private final String output;
+    private final String errorOutput;
+    private final long elapsedNanos;
+    private final String error;
+
+    public CommandResult(String command, int exitCode, String output, long elapsedNanos, String error) {
+        this(command, exitCode, output, "", elapsedNanos, error);
+    }
+
+    /**
+     * @param output 标准输出（普通 shell: 流中混有标准错误）
+     * @param errorOutput 标准错误，仅 shell v2 协议可以单独取得
+     */
+    public CommandResult(String command, int exitCode, String output, String errorOutput,
+            long elapsedNanos, String error) {
+        this.command = command;
+        this.exitCode = exitCode;
+        this.output = output;
+        this.errorOutput = errorOutput;
+        this.elapsedNanos = elapsedNanos;
+        this.error = error;
+    }
+
+    /** 执行失败（流被拒绝、连接断开等） */
+    public static CommandResult failed(String command, long elapsedNanos, String error) {
+        return new CommandResult(command, EXIT_CODE_UNKNOWN, "", elapsedNanos, error);
+    }
+
+    /** 命令是否执行成功：无传输错误，且退出码为 0 或未知 */
+    public boolean isSuccess() {
+        return error == null && (exitCode == 0 || exitCode == EXIT_CODE_UNKNOWN);
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    /** 标准错误输出，没有单独取得时为空字符串 */
+    public String getErrorOutput() {
+        return errorOutput;
+    }
+
+    /** 是否取得了真实的退出码 */
+    public boolean hasExitCode() {
+        return exitCode != EXIT_CODE_UNKNOWN;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    /** 传输层错误描述，成功时为 null */
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return command + " -> " + (error != null ? error
+                : exitCode == EXIT_CODE_UNKNOWN ? "done" : "exit " + exitCode)
+                + " (" + getElapsedMillis() + "ms)";
+    }
+}
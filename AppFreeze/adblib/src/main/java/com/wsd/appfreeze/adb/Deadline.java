@@ -0,0 +1,69 @@
+package com.wsd.appfreeze.adb;
+
+import java.net.SocketTimeoutException;
+
+/**
+ * 操作截止时间
+ *
+ * 以 System.nanoTime() 为基准的绝对时间点，可在多个阻塞操作之间传递，
+ * 用于把握手、打开流、读写以及整轮 force-stop 限制在同一个时间预算之内。
+ * 超时以 SocketTimeoutException 报告；取消通过中断线程实现，等待中的操作抛出 InterruptedException。
+ */
+public final class Deadline {
+
+    /** 永不超时 */
+    public static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+
+    /** 截止时间（nanoTime），NONE 为 Long.MAX_VALUE */
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /** 从现在起 timeoutMs 毫秒后截止，timeoutMs <= 0 表示不限时 */
+    public static Deadline after(long timeoutMs) {
+        if (timeoutMs <= 0) return NONE;
+        return new Deadline(System.nanoTime() + timeoutMs * 1_000_000L);
+    }
+
+    /** 已经到期的截止时间：等待类操作不等待，条件不满足时立即以超时失败 */
+    public static Deadline now() {
+        return new Deadline(System.nanoTime());
+    }
+
+    /** 取本截止时间与 timeoutMs 毫秒后两者中较早的一个 */
+    public Deadline min(long timeoutMs) {
+        Deadline other = after(timeoutMs);
+        if (this == NONE) return other;
+        if (other == NONE) return this;
+        return other.deadlineNanos - deadlineNanos < 0 ? other : this;
+    }
+
+    /** 剩余毫秒数（向上取整），已超时返回 0，不限时返回 Long.MAX_VALUE */
+    public long remainingMillis() {
+        if (this == NONE) return Long.MAX_VALUE;
+        long nanos = deadlineNanos - System.nanoTime();
+        return nanos <= 0 ? 0 : (nanos + 999_999) / 1_000_000;
+    }
+
+    public boolean isExpired() {
+        return remainingMillis() == 0;
+    }
+
+    /** 已超时则抛出 SocketTimeoutException */
+    public void check(String operation) throws SocketTimeoutException {
+        if (isExpired()) throw new SocketTimeoutException(operation + " timed out");
+    }
+
+    /**
+     * 在 monitor 上等待，最长等到截止时间（调用方须持有 monitor 的锁并在循环中检查条件）
+     *
+     * @throws SocketTimeoutException 已到截止时间
+     */
+    public void await(Object monitor, String operation) throws InterruptedException, SocketTimeoutException {
+        long remaining = remainingMillis();
+        if (remaining == 0) throw new SocketTimeoutException(operation + " timed out");
+        monitor.wait(remaining == Long.MAX_VALUE ? 0 : remaining);
+    }
+}
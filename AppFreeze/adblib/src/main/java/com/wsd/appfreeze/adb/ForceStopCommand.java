@@ -0,0 +1,75 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.IOException;
+
+/**
+ * force-stop 命令的实现方式
+ *
+ * 部分 Android TV 固件上 am 是一个包装脚本，每次调用都会通过 app_process
+ * 启动一个新的 Java 虚拟机，在性能较弱的电视芯片上单次耗时数百毫秒。
+ * cmd activity 则直接通过 binder 调用已在运行的 system_server，开销小得多。
+ * 因此优先使用 cmd，只有设备上没有 cmd 时才回退到 am。
+ */
+public enum ForceStopCommand {
+
+    /** binder 直连：cmd activity force-stop */
+    CMD("cmd activity force-stop "),
+    /** 兼容方案：am force-stop */
+    AM("am force-stop ");
+
+    /** 探测脚本：cmd 存在且 activity 服务可用时输出 cmd，否则输出 am */
+    private static final String PROBE_COMMAND = "if command -v cmd >/dev/null 2>&1"
+            + " && cmd activity help >/dev/null 2>&1; then echo CMD; else echo AM; fi";
+
+    /** 探测命令的超时 */
+    public static final long PROBE_TIMEOUT_MS = 3000;
+
+    private final String prefix;
+
+    ForceStopCommand(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /** 生成停止指定包名的 shell 命令 */
+    public String command(String packageName) {
+        return prefix + packageName;
+    }
+
+    /**
+     * 通过 ADB 探测设备支持的 force-stop 方式
+     * 结果与设备和系统版本相关，调用方应按设备指纹缓存。
+     */
+    public static ForceStopCommand probe(AdbConnection connection) throws IOException, InterruptedException {
+        return probe(connection, Deadline.NONE);
+    }
+
+    /** 在截止时间内探测（同时不超过 PROBE_TIMEOUT_MS），超时抛出 SocketTimeoutException */
+    public static ForceStopCommand probe(AdbConnection connection, Deadline deadline)
+            throws IOException, InterruptedException {
+        deadline = deadline.min(PROBE_TIMEOUT_MS);
+        // 只需要输出，使用开销最小的 exec:（同样经 sh -c 执行，支持脚本语法）
+        AdbStream stream = connection.openExec(PROBE_COMMAND, deadline);
+        stream.setDeadline(deadline);
+        boolean[] supported = new boolean[1];
+        try {
+            new LineParser(line -> {
+                if (CMD.name().contentEquals(line)) supported[0] = true;
+            }).parse(stream.getInputStream());
+        } finally {
+            stream.close();
+        }
+        // 远端关闭流表示探测命令执行完毕，其他情况（连接断开）不能作为探测结果
+        if (!stream.isClosedByRemote()) throw new IOException("Connection lost while probing");
+        return supported[0] ? CMD : AM;
+    }
+
+    /** 从缓存的名称还原，无法识别时返回 null */
+    public static ForceStopCommand fromName(String name) {
+        if (name == null) return null;
+        try {
+            return valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.wsd.appfreeze.adb;
+
+/**
+ * 停止应用的方式
+ *
+ * 首轮使用 FORCE_STOP；验证时发现仍在运行（或被粘性服务、广播立即拉起）的应用用 FORCE_STOP_AGAIN 再发一次 force-stop。
+ * 两者的命令相同，只在停止报告中区分首轮和重试。
+ * force-stop 已是 shell 身份能用的最强方式：am kill 只结束后台进程、不阻止拉起，
+ * kill -9 对其他应用的进程没有权限，都不作为重试方式。
+ */
+public enum KillMethod {
+
+    /** 首轮 force-stop，不带 --user，am/cmd activity 默认对所有用户生效 */
+    FORCE_STOP,
+    /** 验证后对仍在运行的应用重发同一条 force-stop，用于停止验证前又被拉起的进程 */
+    FORCE_STOP_AGAIN;
+
+    /** 生成 shell 命令，沿用设备支持的 force-stop 方式（cmd activity 或 am） */
+    public String command(ForceStopCommand base, String packageName) {
+        return base.command(packageName);
+    }
+
+    /** 从名称还原，无法识别时返回 null */
+    public static KillMethod fromName(String name) {
+        if (name == null) return null;
+        try {
+            return valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
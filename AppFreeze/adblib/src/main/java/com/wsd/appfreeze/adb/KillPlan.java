@@ -0,0 +1,128 @@
+package com.wsd.appfreeze.adb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 预先准备好的 force-stop 计划
+ *
+ * 由 AdbClient.prepareKillPlan() 在配置变化或服务启动时生成：包名已校验、
+ * force-stop 命令已按设备支持的方式拼好，批量脚本按当前连接预先编码为 OPEN 负载。
+ * 待机时直接发出，不再读取配置、拼接字符串或编码。
+ * 包名和命令列表不可变；编码结果随连接缓存，重连后服务或单报文上限变化时重新编码。
+ */
+public final class KillPlan {
+
+    private final List<String> packages;
+    private final List<String> commands;
+    private final ForceStopCommand forceStop;
+    /** 从中选取的完整计划，本计划是完整计划时为 null */
+    private final KillPlan source;
+    /** 本计划各应用在完整计划中的位置 */
+    private final int[] selection;
+    /** 按最近一条连接编码的批量脚本，尚未编码时为 null */
+    private volatile AdbBatchExecutor.Prepared batch;
+
+    KillPlan(List<String> packages, ForceStopCommand forceStop) {
+        List<String> commands = new ArrayList<>(packages.size());
+        for (String packageName : packages) {
+            commands.add(forceStop.command(packageName));
+        }
+        this.packages = Collections.unmodifiableList(new ArrayList<>(packages));
+        this.commands = Collections.unmodifiableList(commands);
+        this.forceStop = forceStop;
+        this.source = null;
+        this.selection = null;
+    }
+
+    /** 从完整计划中按给定位置选取，命令沿用完整计划中已拼好的 */
+    private KillPlan(KillPlan source, int[] selection) {
+        List<String> packages = new ArrayList<>(selection.length);
+        List<String> commands = new ArrayList<>(selection.length);
+        for (int index : selection) {
+            packages.add(source.packages.get(index));
+            commands.add(source.commands.get(index));
+        }
+        this.packages = Collections.unmodifiableList(packages);
+        this.commands = Collections.unmodifiableList(commands);
+        this.forceStop = source.forceStop;
+        this.source = source;
+        this.selection = selection;
+    }
+
+    /** 待停止的包名（已过滤非法包名），顺序与执行结果一致 */
+    public List<String> getPackages() {
+        return packages;
+    }
+
+    public ForceStopCommand getForceStopCommand() {
+        return forceStop;
+    }
+
+    public int size() {
+        return packages.size();
+    }
+
+    public boolean isEmpty() {
+        return packages.isEmpty();
+    }
+
+    List<String> getCommands() {
+        return commands;
+    }
+
+    /** 使用另一种 force-stop 方式重建计划（探测结果变化时） */
+    KillPlan withForceStopCommand(ForceStopCommand command) {
+        return command == forceStop ? this : new KillPlan(packages, command);
+    }
+
+    /**
+     * 只保留快照中正在运行的应用，并按资源占用从高到低排序
+     * 批量脚本和流水线都按计划顺序发出命令，时间预算用尽或被打断时负载最重的应用已经停止。
+     * 结果与本计划相同时返回本计划；否则返回的计划从本计划中选取，
+     * 编码时复用本计划已准备的脚本片段和结束标记（见 prepareFor）。
+     */
+    KillPlan retainRunning(ProcessSnapshot snapshot) {
+        List<ProcessSnapshot.App> running = new ArrayList<>(packages.size());
+        List<Integer> positions = new ArrayList<>(packages.size());
+        for (int i = 0; i < packages.size(); i++) {
+            ProcessSnapshot.App app = snapshot.get(packages.get(i));
+            if (app != null) {
+                running.add(app);
+                positions.add(i);
+            }
+        }
+        Integer[] order = new Integer[running.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(running.get(b).getWeight(), running.get(a).getWeight()));
+
+        int[] selection = new int[order.length];
+        boolean unchanged = selection.length == packages.size();
+        for (int i = 0; i < selection.length; i++) {
+            selection[i] = positions.get(order[i]);
+            if (selection[i] != i) unchanged = false;
+        }
+        if (unchanged) return this;
+        // 始终从完整计划中选取，避免选取链
+        if (source == null) return new KillPlan(this, selection);
+        int[] mapped = new int[selection.length];
+        for (int i = 0; i < selection.length; i++) mapped[i] = this.selection[selection[i]];
+        return new KillPlan(source, mapped);
+    }
+
+    /**
+     * 获取按该连接编码的批量脚本，缓存与连接不匹配时重新编码并缓存
+     * 连接建立时即可调用，待机时命中缓存；选取出的计划从完整计划的脚本中选取片段拼接
+     */
+    AdbBatchExecutor.Prepared prepareFor(AdbConnection connection) {
+        AdbBatchExecutor.Prepared prepared = batch;
+        if (prepared == null || !prepared.matches(connection)) {
+            prepared = source != null ? source.prepareFor(connection).select(selection)
+                    : new AdbBatchExecutor(connection).prepare(commands);
+            batch = prepared;
+        }
+        return prepared;
+    }
+}
@@ -0,0 +1,190 @@
+package com.wsd.appfreeze.adb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一轮 force-stop 的逐个应用结果
+ *
+ * 开启验证时，结果以停止后重新抓取的进程快照为准，而不是命令的退出码：
+ * 命令成功但进程立即被拉起的应用记为 RESPAWNED 或 SURVIVED；
+ * 验证未能完成（快照失败、时间预算用尽）时按命令结果判断，isVerified() 为 false。
+ */
+public final class KillReport {
+
+    /** 单个应用的最终状态 */
+    public enum Status {
+        /** 已停止（开启验证时已确认进程不在运行） */
+        STOPPED,
+        /** 停止前就未在运行，没有发出命令 */
+        NOT_RUNNING,
+        /** 所有方式都试过后仍在运行，且进程号全部是新的（被系统重新拉起） */
+        RESPAWNED,
+        /** 所有方式都试过后仍在运行 */
+        SURVIVED,
+        /** 命令执行失败，且未能验证 */
+        FAILED
+    }
+
+    /** 单个应用的结果 */
+    public static final class Outcome {
+        private final String packageName;
+        private final Status status;
+        private final KillMethod method;
+        private final int attempts;
+        private final long elapsedNanos;
+        private final String error;
+
+        Outcome(String packageName, Status status, KillMethod method, int attempts, long elapsedNanos, String error) {
+            this.packageName = packageName;
+            this.status = status;
+            this.method = method;
+            this.attempts = attempts;
+            this.elapsedNanos = elapsedNanos;
+            this.error = error;
+        }
+
+        public String getPackageName() {
+            return packageName;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /** 最后使用的方式，没有发出命令时为 null */
+        public KillMethod getMethod() {
+            return method;
+        }
+
+        /** 发出的命令数 */
+        public int getAttempts() {
+            return attempts;
+        }
+
+        /** 从本轮开始到确认结果的耗时 */
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+
+        /** 最后一条失败命令的原因，没有时为 null */
+        public String getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return packageName + " " + status + (method != null ? " " + method + " x" + attempts : "")
+                    + " (" + getElapsedMillis() + "ms)" + (error != null ? " - " + error : "");
+        }
+    }
+
+    private final List<Outcome> outcomes;
+    private final boolean verified;
+    private final long elapsedNanos;
+
+    private KillReport(List<Outcome> outcomes, boolean verified, long elapsedNanos) {
+        this.outcomes = Collections.unmodifiableList(outcomes);
+        this.verified = verified;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /** 按停止顺序排列的结果（未运行的应用在前） */
+    public List<Outcome> getOutcomes() {
+        return outcomes;
+    }
+
+    /** 结果是否经过进程快照验证 */
+    public boolean isVerified() {
+        return verified;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    public int count(Status status) {
+        int count = 0;
+        for (Outcome outcome : outcomes) {
+            if (outcome.status == status) count++;
+        }
+        return count;
+    }
+
+    /** 已处理的应用数：已停止和本来就未运行的 */
+    public int getHandledCount() {
+        return count(Status.STOPPED) + count(Status.NOT_RUNNING);
+    }
+
+    /** 在执行过程中记录每个应用的进展 */
+    static final class Builder {
+        private final long startNanos = System.nanoTime();
+        private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+        private static final class Entry {
+            Status status;
+            KillMethod method;
+            int attempts;
+            long elapsedNanos;
+            boolean lastSucceeded;
+            String error;
+        }
+
+        private Entry entry(String packageName) {
+            Entry entry = entries.get(packageName);
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(packageName, entry);
+            }
+            return entry;
+        }
+
+        void notRunning(String packageName) {
+            entry(packageName).status = Status.NOT_RUNNING;
+        }
+
+        /** 记录一条已执行的命令 */
+        void sent(String packageName, KillMethod method, CommandResult result) {
+            Entry entry = entry(packageName);
+            entry.method = method;
+            entry.attempts++;
+            entry.elapsedNanos = System.nanoTime() - startNanos;
+            entry.lastSucceeded = result.isSuccess();
+            if (!result.isSuccess()) {
+                entry.error = result.getError() != null ? result.getError() : "exit " + result.getExitCode();
+            }
+        }
+
+        /** 快照确认已不在运行 */
+        void stopped(String packageName) {
+            finish(packageName, Status.STOPPED);
+        }
+
+        /** 所有方式都试过后仍在运行 */
+        void survived(String packageName, boolean respawned) {
+            finish(packageName, respawned ? Status.RESPAWNED : Status.SURVIVED);
+        }
+
+        private void finish(String packageName, Status status) {
+            Entry entry = entry(packageName);
+            entry.status = status;
+            entry.elapsedNanos = System.nanoTime() - startNanos;
+        }
+
+        /** 未得出最终状态的应用按最后一条命令的结果判断 */
+        KillReport build(boolean verified) {
+            List<Outcome> outcomes = new ArrayList<>(entries.size());
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                Status status = entry.status != null ? entry.status
+                        : entry.lastSucceeded ? Status.STOPPED : Status.FAILED;
+                String error = status == Status.STOPPED || status == Status.NOT_RUNNING ? null : entry.error;
+                outcomes.add(new Outcome(e.getKey(), status, entry.method, entry.attempts, entry.elapsedNanos, error));
+            }
+            return new KillReport(outcomes, verified, System.nanoTime() - startNanos);
+        }
+    }
+}
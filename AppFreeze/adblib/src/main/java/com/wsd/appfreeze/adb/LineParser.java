@@ -0,0 +1,144 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 增量 UTF-8 行解析器
+ *
+ * 按到达顺序喂入任意切分的字节块，遇到 '\n' 时把一整行解码后交给 Handler，
+ * 行尾的 '\r'（PTY 换行）会被去掉。UTF-8 多字节序列中不会出现 '\n'，
+ * 因此只在行边界解码即可正确处理跨块的字符，无需拼接完整输出。
+ *
+ * 行字节缓冲和字符缓冲在整个解析过程中复用，Handler 收到的 CharSequence
+ * 只在回调期间有效，需要保留时应自行 toString()。
+ * 配合 fields()/parseInt()/parseLong() 可以在不创建子串的情况下按空白拆分记录（如 ps -A 的输出）。
+ */
+public final class LineParser {
+
+    /** 行回调 */
+    public interface Handler {
+        void onLine(CharSequence line) throws IOException;
+    }
+
+    private final Handler handler;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private byte[] lineBytes = new byte[256];
+    private ByteBuffer lineBuffer = ByteBuffer.wrap(lineBytes);
+    private int lineLength;
+    private CharBuffer chars = CharBuffer.allocate(256);
+
+    public LineParser(Handler handler) {
+        this.handler = handler;
+    }
+
+    /** 喂入一段数据，其中的完整行立即回调 */
+    public void feed(byte[] data, int offset, int length) throws IOException {
+        int end = offset + length;
+        int start = offset;
+        for (int i = offset; i < end; i++) {
+            if (data[i] != '\n') continue;
+            append(data, start, i - start);
+            emitLine();
+            start = i + 1;
+        }
+        append(data, start, end - start);
+    }
+
+    public void feed(byte[] data) throws IOException {
+        feed(data, 0, data.length);
+    }
+
+    /** 输入结束，末尾没有换行的最后一行也会回调 */
+    public void finish() throws IOException {
+        if (lineLength > 0) emitLine();
+    }
+
+    /** 读完整个输入流并逐行回调 */
+    public void parse(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) feed(buffer, 0, n);
+        finish();
+    }
+
+    private void append(byte[] data, int offset, int length) {
+        if (length == 0) return;
+        if (lineLength + length > lineBytes.length) {
+            byte[] grown = new byte[Math.max(lineBytes.length * 2, lineLength + length)];
+            System.arraycopy(lineBytes, 0, grown, 0, lineLength);
+            lineBytes = grown;
+            lineBuffer = ByteBuffer.wrap(grown);
+        }
+        System.arraycopy(data, offset, lineBytes, lineLength, length);
+        lineLength += length;
+    }
+
+    private void emitLine() throws IOException {
+        int length = lineLength;
+        if (length > 0 && lineBytes[length - 1] == '\r') length--;
+        lineLength = 0;
+
+        // UTF-8 解码后的字符数不超过字节数
+        if (chars.capacity() < length) chars = CharBuffer.allocate(Math.max(chars.capacity() * 2, length));
+        chars.clear();
+        decoder.reset();
+        lineBuffer.clear().limit(length);
+        decoder.decode(lineBuffer, chars, true);
+        decoder.flush(chars);
+        chars.flip();
+        handler.onLine(chars);
+    }
+
+    /**
+     * 按空白拆分字段，第 i 个字段为 [bounds[2i], bounds[2i+1])
+     *
+     * @return 字段数；超过 bounds 容量的字段不记录，但仍计入返回值
+     */
+    public static int fields(CharSequence line, int[] bounds) {
+        int count = 0;
+        int length = line.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && Character.isWhitespace(line.charAt(i))) i++;
+            if (i == length) break;
+            int start = i;
+            while (i < length && !Character.isWhitespace(line.charAt(i))) i++;
+            if (2 * count + 1 < bounds.length) {
+                bounds[2 * count] = start;
+                bounds[2 * count + 1] = i;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /** 解析 [start, end) 范围内的十进制整数，格式不正确时返回 defaultValue */
+    public static int parseInt(CharSequence text, int start, int end, int defaultValue) {
+        long value = parseLong(text, start, end, Long.MIN_VALUE);
+        if (value == Long.MIN_VALUE || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) return defaultValue;
+        return (int) value;
+    }
+
+    /** 解析 [start, end) 范围内的十进制整数，格式不正确时返回 defaultValue */
+    public static long parseLong(CharSequence text, int start, int end, long defaultValue) {
+        if (start >= end) return defaultValue;
+        boolean negative = text.charAt(start) == '-';
+        int i = negative ? start + 1 : start;
+        if (i == end || end - i > 18) return defaultValue;
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) return defaultValue;
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+}
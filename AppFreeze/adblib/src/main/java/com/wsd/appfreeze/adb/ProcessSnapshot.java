@@ -0,0 +1,274 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 运行中应用进程的快照
+ *
+ * 通过一次 ps -A 取得全部进程，只保留应用进程（uid 的 appId 在 10000~19999 之间），
+ * 按包名（进程名中 ':' 之前的部分）汇总为 包名 → 进程号/uid/RSS/CPU 的紧凑索引。
+ * 同一条命令接着读出 /proc/net 下的 TCP/UDP 套接字表，按 uid 统计活动套接字数，作为网络活动的度量。
+ * 待关闭列表中大多数应用通常已经不在运行，与快照取交集后只需对运行中的应用发出命令，
+ * 并按资源占用（getWeight()）从高到低排序，先停止负载最重的应用（如占满 CPU 和上行带宽的 PCDN 客户端）。
+ * 快照本身不可变，可以保留下来用于统计和展示。
+ */
+public final class ProcessSnapshot {
+
+    /** 列出全部进程，只取需要的列（toybox ps，Android 8+） */
+    public static final String PS_COMMAND = "ps -A -o PID,UID,RSS,%CPU,NAME";
+    /** 套接字表：只需要 uid 和状态列，读不到时（部分系统限制 /proc/net）网络活动按 0 计 */
+    private static final String SOCKETS_COMMAND = "cat /proc/net/tcp /proc/net/tcp6 /proc/net/udp /proc/net/udp6 2>/dev/null";
+    /** 一次往返取得进程列表和套接字表 */
+    static final String CAPTURE_COMMAND = PS_COMMAND + "; " + SOCKETS_COMMAND;
+    /** 抓取快照的超时 */
+    public static final long CAPTURE_TIMEOUT_MS = 3000;
+
+    /** 多用户下 uid = userId * PER_USER_RANGE + appId */
+    private static final int PER_USER_RANGE = 100000;
+    private static final int FIRST_APPLICATION_UID = 10000;
+    private static final int LAST_APPLICATION_UID = 19999;
+    /** 套接字表中 TCP 监听状态，监听套接字不代表网络活动 */
+    private static final int TCP_LISTEN = 0x0A;
+
+    /** 资源权重：1MB 常驻内存计 1 分，0.1% CPU 计 5 分，一个活动套接字计 10 分 */
+    private static final long WEIGHT_PER_CPU_TENTH = 5;
+    private static final long WEIGHT_PER_SOCKET = 10;
+
+    /** 一个应用（包名）的全部进程 */
+    public static final class App {
+        private final String packageName;
+        private final int uid;
+        private int[] pids;
+        private int pidCount;
+        private long rssKb;
+        /** CPU 占用，单位为 0.1% */
+        private int cpuTenths;
+        private int sockets;
+
+        App(String packageName, int uid) {
+            this.packageName = packageName;
+            this.uid = uid;
+            this.pids = new int[2];
+        }
+
+        void add(int pid, long rssKb, int cpuTenths) {
+            if (pidCount == pids.length) pids = Arrays.copyOf(pids, pidCount * 2);
+            pids[pidCount++] = pid;
+            this.rssKb += rssKb;
+            this.cpuTenths += cpuTenths;
+        }
+
+        void trim() {
+            if (pids.length != pidCount) pids = Arrays.copyOf(pids, pidCount);
+        }
+
+        public String getPackageName() {
+            return packageName;
+        }
+
+        public int getUid() {
+            return uid;
+        }
+
+        /** 进程号（主进程和 ':' 子进程） */
+        public int[] getPids() {
+            return pids.clone();
+        }
+
+        public int getProcessCount() {
+            return pidCount;
+        }
+
+        /** 各进程常驻内存之和（KB） */
+        public long getRssKb() {
+            return rssKb;
+        }
+
+        /** 各进程的 CPU 占用之和（ps 的 %CPU 为进程生命周期内的平均值） */
+        public float getCpuPercent() {
+            return cpuTenths / 10f;
+        }
+
+        /** 该 uid 的活动套接字数（不含 TCP 监听套接字；共享 uid 的应用计数相同） */
+        public int getSocketCount() {
+            return sockets;
+        }
+
+        /**
+         * 资源占用的综合权重，越大越应先停止
+         * 内存、CPU、网络按固定系数折算后相加：1% CPU 相当于 50MB 内存，一个活动套接字相当于 10MB。
+         */
+        public long getWeight() {
+            return rssKb / 1024 + cpuTenths * WEIGHT_PER_CPU_TENTH + sockets * WEIGHT_PER_SOCKET;
+        }
+
+        @Override
+        public String toString() {
+            return packageName + " uid=" + uid + " pids=" + pidCount + " rss=" + rssKb + "KB cpu=" + getCpuPercent()
+                    + "% sockets=" + sockets + " weight=" + getWeight();
+        }
+    }
+
+    private final Map<String, App> apps;
+    private final long timestamp;
+
+    private ProcessSnapshot(Map<String, App> apps, long timestamp) {
+        this.apps = Collections.unmodifiableMap(apps);
+        this.timestamp = timestamp;
+    }
+
+    /** 指定包名的进程，未运行时返回 null */
+    public App get(String packageName) {
+        return apps.get(packageName);
+    }
+
+    public boolean isRunning(String packageName) {
+        return apps.containsKey(packageName);
+    }
+
+    /** 全部运行中的应用 */
+    public Collection<App> getApps() {
+        return apps.values();
+    }
+
+    public int size() {
+        return apps.size();
+    }
+
+    /** 抓取时间（System.currentTimeMillis()） */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * 通过 ADB 抓取快照
+     * 只需要输出，使用 exec: 服务，边接收边解析，不缓存完整的 ps 输出和套接字表。
+     *
+     * @param deadline 截止时间（同时不超过 CAPTURE_TIMEOUT_MS），超时抛出 SocketTimeoutException
+     * @throws IOException 输出不完整或没有解析出任何应用进程（ps 不支持这些参数）
+     */
+    public static ProcessSnapshot capture(AdbConnection connection, Deadline deadline)
+            throws IOException, InterruptedException {
+        deadline = deadline.min(CAPTURE_TIMEOUT_MS);
+        AdbStream stream = connection.openExec(CAPTURE_COMMAND, deadline);
+        stream.setDeadline(deadline);
+        Parser parser = new Parser();
+        try {
+            new LineParser(parser).parse(stream.getInputStream());
+        } finally {
+            stream.close();
+        }
+        if (!stream.isClosedByRemote()) throw new IOException("Process list truncated");
+        if (parser.apps.isEmpty()) throw new IOException("No application processes in ps output");
+        return parser.build();
+    }
+
+    /**
+     * 逐行解析 ps 输出（PID UID RSS %CPU NAME）和其后的套接字表
+     * 套接字表的行以 "序号:" 开头，第 4 列为状态，第 8 列为 uid
+     */
+    static final class Parser implements LineParser.Handler {
+        private final Map<String, App> apps = new HashMap<>();
+        private final Map<Integer, Integer> socketsByUid = new HashMap<>();
+        private final int[] bounds = new int[16];
+
+        @Override
+        public void onLine(CharSequence line) {
+            int count = LineParser.fields(line, bounds);
+            if (count >= 8 && line.charAt(bounds[1] - 1) == ':') {
+                onSocket(line);
+                return;
+            }
+            if (count < 5) return;
+            // 表头和格式不符的行在这里被跳过
+            int pid = LineParser.parseInt(line, bounds[0], bounds[1], -1);
+            if (pid <= 0) return;
+            int uid = parseUid(line, bounds[2], bounds[3]);
+            int appId = uid % PER_USER_RANGE;
+            if (uid < 0 || appId < FIRST_APPLICATION_UID || appId > LAST_APPLICATION_UID) return;
+            long rssKb = Math.max(0, LineParser.parseLong(line, bounds[4], bounds[5], 0));
+            int cpuTenths = parseTenths(line, bounds[6], bounds[7]);
+
+            // 进程名可能带 ':' 子进程后缀，名称本身不含空白
+            int nameStart = bounds[8];
+            int nameEnd = bounds[9];
+            for (int i = nameStart; i < nameEnd; i++) {
+                if (line.charAt(i) == ':') {
+                    nameEnd = i;
+                    break;
+                }
+            }
+            if (nameEnd == nameStart) return;
+            String packageName = line.subSequence(nameStart, nameEnd).toString();
+            App app = apps.get(packageName);
+            if (app == null) {
+                app = new App(packageName, uid);
+                apps.put(packageName, app);
+            }
+            app.add(pid, rssKb, cpuTenths);
+        }
+
+        private void onSocket(CharSequence line) {
+            int state = parseHex(line, bounds[6], bounds[7]);
+            if (state == TCP_LISTEN) return;
+            int uid = LineParser.parseInt(line, bounds[14], bounds[15], -1);
+            if (uid < 0) return;
+            Integer sockets = socketsByUid.get(uid);
+            socketsByUid.put(uid, sockets != null ? sockets + 1 : 1);
+        }
+
+        ProcessSnapshot build() {
+            for (App app : apps.values()) {
+                app.trim();
+                Integer sockets = socketsByUid.get(app.uid);
+                if (sockets != null) app.sockets = sockets;
+            }
+            return new ProcessSnapshot(apps, System.currentTimeMillis());
+        }
+    }
+
+    /** uid 列可能是数字，也可能是 u0_a123 形式的用户名 */
+    static int parseUid(CharSequence text, int start, int end) {
+        int uid = LineParser.parseInt(text, start, end, -1);
+        if (uid >= 0) return uid;
+        if (end - start < 4 || text.charAt(start) != 'u') return -1;
+        int sep = start + 1;
+        while (sep < end && text.charAt(sep) != '_') sep++;
+        if (sep + 2 > end || text.charAt(sep + 1) != 'a') return -1;
+        int userId = LineParser.parseInt(text, start + 1, sep, -1);
+        int appIndex = LineParser.parseInt(text, sep + 2, end, -1);
+        if (userId < 0 || appIndex < 0) return -1;
+        return userId * PER_USER_RANGE + FIRST_APPLICATION_UID + appIndex;
+    }
+
+    /** 解析 [start, end) 范围内的十六进制整数，格式不正确时返回 -1 */
+    static int parseHex(CharSequence text, int start, int end) {
+        if (start >= end || end - start > 7) return -1;
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(text.charAt(i), 16);
+            if (digit < 0) return -1;
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    /** 解析 12.3 形式的百分比，返回 0.1% 为单位的整数，格式不正确时返回 0 */
+    static int parseTenths(CharSequence text, int start, int end) {
+        int dot = start;
+        while (dot < end && text.charAt(dot) != '.') dot++;
+        int whole = LineParser.parseInt(text, start, dot, -1);
+        if (whole < 0) return 0;
+        int tenths = 0;
+        if (dot + 1 < end) {
+            int digit = text.charAt(dot + 1) - '0';
+            if (digit >= 0 && digit <= 9) tenths = digit;
+        }
+        return whole * 10 + tenths;
+    }
+}
@@ -0,0 +1,205 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 待机期间的应用重启监视器
+ *
+ * 被停止的应用常在几分钟后被闹钟、推送或广播重新拉起。本类在一条长期打开的 exec: 流上运行 logcat，
+ * 只输出事件日志中的 am_proc_start（ActivityManager 每启动一个进程写入一条），
+ * 作为流的 Listener 在连接读线程上增量解析，待关闭列表中的应用一启动就立即异步发出 force-stop。
+ * 没有事件时流上没有数据，不轮询、不占用线程，也不会唤醒 CPU。
+ *
+ * 连接断开时流随之关闭，调用方在新连接建立后重新 attach()；
+ * logcat 自行退出时在同一连接上重新打开；刚打开就退出说明 shell 无权读取事件日志，
+ * 不再重试（避免循环），通过 Listener.onUnavailable 通知调用方改用轮询兜底。
+ */
+public final class RespawnWatcher implements AdbStream.Listener {
+
+    /** 只输出 am_proc_start 事件；-T 1 跳过缓冲区中的历史记录，只保留最后一条 */
+    static final String LOGCAT_COMMAND = "logcat -b events -T 1 -v brief am_proc_start:I '*:S'";
+    private static final String EVENT_TAG = "am_proc_start";
+    /** 同一应用两次重新停止的最短间隔，避免与系统反复拉起形成循环 */
+    private static final long MIN_RESTOP_INTERVAL_MS = 1000;
+    /** 流存活不足该时间就关闭视为 logcat 不可用，不在同一连接上重新打开 */
+    private static final long MIN_STREAM_LIFETIME_MS = 1000;
+
+    /** 监视回调，在连接读线程上执行，不应阻塞 */
+    public interface Listener {
+        /** 重新停止的结果 */
+        void onRestopped(String packageName, int pid, CommandResult result);
+
+        /** logcat 流刚打开就关闭，事件日志不可用，本连接上不再重新打开 */
+        void onUnavailable();
+    }
+
+    private final Set<String> packages;
+    private final ForceStopCommand forceStop;
+    private final Listener listener;
+    /** 每条流一个解析器，只在读线程上访问 */
+    private volatile LineParser parser;
+    /** 各应用最近一次重新停止的时间，只在读线程上访问 */
+    private final Map<String, Long> lastRestopNanos = new HashMap<>();
+    private volatile boolean stopped;
+    private volatile AdbConnection connection;
+    private volatile AdbStream stream;
+    private volatile long openedNanos;
+
+    public RespawnWatcher(Collection<String> packages, ForceStopCommand forceStop, Listener listener) {
+        this.packages = new HashSet<>(packages);
+        this.forceStop = forceStop;
+        this.listener = listener;
+    }
+
+    /**
+     * 在该连接上打开 logcat 流，之前的流（旧连接上的）随之关闭
+     * 旧流在锁外关闭：关闭会同步回调 onClose，且不能在持有本对象锁时等待流的锁
+     */
+    public void attach(AdbConnection connection) throws IOException, InterruptedException {
+        AdbStream old;
+        synchronized (this) {
+            if (stopped) return;
+            old = stream;
+            this.connection = connection;
+            this.openedNanos = System.nanoTime();
+            this.parser = new LineParser(this::onLine);
+            // 只在已建立的连接上打开，不等待握手
+            this.stream = connection.beginOpen(ShellMode.EXEC.destination(LOGCAT_COMMAND), this, Deadline.now());
+        }
+        if (old != null) closeQuietly(old);
+    }
+
+    /** 停止监视并关闭流（在锁外关闭，见 attach） */
+    public void stop() {
+        AdbStream s;
+        synchronized (this) {
+            stopped = true;
+            s = stream;
+            stream = null;
+            connection = null;
+        }
+        if (s != null) closeQuietly(s);
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    @Override
+    public void onData(AdbStream stream) {
+        try {
+            byte[] chunk;
+            while ((chunk = stream.poll()) != null) {
+                if (stream == this.stream) parser.feed(chunk, 0, chunk.length);
+            }
+        } catch (IOException e) {
+            // 回复 OKAY 失败说明连接已断开，随后会收到关闭事件
+        }
+    }
+
+    @Override
+    public void onClose(AdbStream closed) {
+        AdbConnection conn;
+        synchronized (this) {
+            if (stopped || closed != stream) return;
+            stream = null;
+            conn = connection;
+        }
+        boolean exitedEarly = System.nanoTime() - openedNanos < MIN_STREAM_LIFETIME_MS * 1_000_000L;
+        if (conn == null || !conn.isConnected()) return;
+        if (exitedEarly) {
+            listener.onUnavailable();
+            return;
+        }
+        try {
+            // logcat 自行退出（如缓冲区被清空），在同一连接上重新打开
+            attach(conn);
+        } catch (IOException e) {
+            // 连接已断开，等待调用方在新连接上 attach()
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void onLine(CharSequence line) {
+        ProcessStart event = parseProcessStart(line);
+        if (event != null) onProcessStart(event.packageName, event.pid);
+    }
+
+    /** 一条 am_proc_start 事件中用到的字段 */
+    static final class ProcessStart {
+        final String packageName;
+        final int pid;
+
+        ProcessStart(String packageName, int pid) {
+            this.packageName = packageName;
+            this.pid = pid;
+        }
+    }
+
+    /**
+     * 解析一条事件：I/am_proc_start( 1234): [user,pid,uid,进程名,类型,组件]
+     * 不同系统版本开头的字段数不同，进程名取第一个非数字字段，其前面依次是 pid 和 uid；
+     * 进程名的 ':' 子进程后缀被去掉。不是 am_proc_start 事件时返回 null
+     */
+    static ProcessStart parseProcessStart(CharSequence line) {
+        int tag = indexOf(line, EVENT_TAG, 0);
+        if (tag < 0) return null;
+        int start = indexOf(line, "[", tag);
+        if (start < 0) return null;
+        int pid = -1;
+        int previous = -1;
+        int field = start + 1;
+        int length = line.length();
+        while (field < length) {
+            int end = field;
+            while (end < length && line.charAt(end) != ',' && line.charAt(end) != ']') end++;
+            int value = LineParser.parseInt(line, field, end, Integer.MIN_VALUE);
+            if (value == Integer.MIN_VALUE) {
+                int nameEnd = field;
+                while (nameEnd < end && line.charAt(nameEnd) != ':') nameEnd++;
+                if (nameEnd == field) return null;
+                return new ProcessStart(line.subSequence(field, nameEnd).toString(), pid);
+            }
+            pid = previous;
+            previous = value;
+            field = end + 1;
+        }
+        return null;
+    }
+
+    private void onProcessStart(String packageName, int pid) {
+        if (!packages.contains(packageName)) return;
+        long now = System.nanoTime();
+        Long last = lastRestopNanos.get(packageName);
+        if (last != null && now - last < MIN_RESTOP_INTERVAL_MS * 1_000_000L) return;
+        lastRestopNanos.put(packageName, now);
+
+        AdbConnection conn = connection;
+        if (conn == null || stopped) return;
+        // 只发出 OPEN 即返回，不阻塞读线程；需要退出码判断是否停止成功
+        conn.execute(forceStop.command(packageName), conn.chooseShellMode(true))
+                .thenAccept(result -> listener.onRestopped(packageName, pid, result));
+    }
+
+    private static int indexOf(CharSequence text, String target, int from) {
+        int max = text.length() - target.length();
+        outer:
+        for (int i = from; i <= max; i++) {
+            for (int j = 0; j < target.length(); j++) {
+                if (text.charAt(i + j) != target.charAt(j)) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static void closeQuietly(AdbStream stream) {
+        try { stream.close(); } catch (IOException ignored) { }
+    }
+}
@@ -0,0 +1,31 @@
+package com.wsd.appfreeze.adb;
+
+/**
+ * 远端执行命令所用的 ADB 服务
+ */
+public enum ShellMode {
+
+    /** 旧版 shell 协议：标准输出和标准错误混在一起，不回传退出码 */
+    SHELL("shell:"),
+    /**
+     * shell v2 协议（adbd 声明 shell_v2 特性时可用）：
+     * 按包区分标准输出、标准错误，结束时回传退出码；raw 表示不分配 PTY，输出不做换行转换
+     */
+    SHELL_V2("shell,v2,raw:"),
+    /**
+     * exec 服务：不分配 PTY、不做任何分帧或换行转换，原样回传命令输出的字节，单条命令开销最小；
+     * 不回传退出码，适合只需解析输出的命令（ps、dumpsys、cat /proc/...）
+     */
+    EXEC("exec:");
+
+    private final String prefix;
+
+    ShellMode(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /** 生成 OPEN 报文的目标服务字符串 */
+    public String destination(String command) {
+        return prefix + command;
+    }
+}
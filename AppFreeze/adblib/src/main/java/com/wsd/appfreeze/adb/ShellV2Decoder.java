@@ -0,0 +1,92 @@
+package com.wsd.appfreeze.adb;
+
+import java.io.IOException;
+
+/**
+ * shell v2 协议解码器
+ *
+ * shell,v2 流中的数据按包传输：[id:1][length:4 小端][data:length]，
+ * id 区分标准输入、标准输出、标准错误和退出码等。包可能跨越多个 WRTE 报文，
+ * 本类逐段喂入、增量解析，负载直接转交给 Sink，不做整包拼接。
+ */
+final class ShellV2Decoder {
+
+    static final int ID_STDIN = 0;
+    static final int ID_STDOUT = 1;
+    static final int ID_STDERR = 2;
+    static final int ID_EXIT = 3;
+    static final int ID_CLOSE_STDIN = 4;
+    static final int ID_WINDOW_SIZE_CHANGE = 5;
+
+    private static final int HEADER_LENGTH = 5;
+
+    /** 解码结果回调，data 只在回调期间有效 */
+    interface Sink {
+        void onStdout(byte[] data, int offset, int length) throws IOException;
+
+        void onStderr(byte[] data, int offset, int length) throws IOException;
+
+        void onExit(int exitCode) throws IOException;
+    }
+
+    private final Sink sink;
+    private final byte[] header = new byte[HEADER_LENGTH];
+    private int headerLength;
+    private int packetId;
+    /** 当前包剩余的负载字节数 */
+    private int remaining;
+    private boolean exited;
+
+    ShellV2Decoder(Sink sink) {
+        this.sink = sink;
+    }
+
+    /** 是否已收到退出码 */
+    boolean hasExited() {
+        return exited;
+    }
+
+    void feed(byte[] data, int offset, int length) throws IOException {
+        int end = offset + length;
+        while (offset < end) {
+            if (remaining == 0) {
+                int n = Math.min(HEADER_LENGTH - headerLength, end - offset);
+                System.arraycopy(data, offset, header, headerLength, n);
+                headerLength += n;
+                offset += n;
+                if (headerLength < HEADER_LENGTH) return;
+                headerLength = 0;
+                packetId = header[0] & 0xFF;
+                remaining = (header[1] & 0xFF) | (header[2] & 0xFF) << 8
+                        | (header[3] & 0xFF) << 16 | (header[4] & 0xFF) << 24;
+                if (remaining < 0) throw new IOException("Invalid shell packet length: " + remaining);
+                continue;
+            }
+            int n = Math.min(remaining, end - offset);
+            dispatch(data, offset, n);
+            remaining -= n;
+            offset += n;
+        }
+    }
+
+    private void dispatch(byte[] data, int offset, int length) throws IOException {
+        switch (packetId) {
+            case ID_STDOUT:
+                sink.onStdout(data, offset, length);
+                break;
+            case ID_STDERR:
+                sink.onStderr(data, offset, length);
+                break;
+            case ID_EXIT:
+                // 退出码包只有 1 个字节
+                if (!exited) {
+                    exited = true;
+                    sink.onExit(data[offset] & 0xFF);
+                }
+                break;
+            default:
+                // 其他包（窗口大小等）对命令执行结果无意义，忽略
+                break;
+        }
+    }
+}
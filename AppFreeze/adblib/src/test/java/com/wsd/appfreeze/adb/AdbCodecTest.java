@@ -0,0 +1,92 @@
+package com.wsd.appfreeze.adb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AdbCodecTest {
+
+    @Test
+    public void headerRoundTrip() {
+        byte[] payload = "shell:echo 1\0".getBytes();
+        ByteBuffer buffer = ByteBuffer.allocate(AdbProtocol.ADB_HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        AdbCodec.encodeHeader(buffer, AdbProtocol.CMD_OPEN, 7, 0, payload, 0, payload.length, true);
+        buffer.flip();
+
+        AdbProtocol.AdbMessage msg = new AdbProtocol.AdbMessage();
+        AdbCodec.decodeHeader(buffer, msg);
+        assertEquals(AdbProtocol.CMD_OPEN, msg.command);
+        assertEquals(7, msg.arg0);
+        assertEquals(0, msg.arg1);
+        assertEquals(payload.length, msg.payloadLength);
+        assertEquals(AdbCodec.checksum(payload, 0, payload.length), msg.checksum);
+        assertEquals(AdbProtocol.CMD_OPEN ^ 0xFFFFFFFF, msg.magic);
+
+        msg.payload = payload;
+        assertTrue(AdbProtocol.validateMessage(msg, true));
+        msg.magic ^= 1;
+        assertFalse(AdbProtocol.validateMessage(msg, true));
+    }
+
+    @Test
+    public void checksumDisabledWritesZero() {
+        byte[] payload = { 1, 2, 3 };
+        ByteBuffer buffer = ByteBuffer.allocate(AdbProtocol.ADB_HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        AdbCodec.encodeHeader(buffer, AdbProtocol.CMD_WRTE, 1, 2, payload, 0, payload.length, false);
+        assertEquals(0, buffer.getInt(16));
+    }
+
+    /** 展开的求和与逐字节按无符号值求和一致，覆盖各种偏移和不足 8 字节的尾部 */
+    @Test
+    public void checksumMatchesUnsignedSum() {
+        Random random = new Random(42);
+        byte[] data = new byte[64];
+        random.nextBytes(data);
+        for (int offset = 0; offset < 9; offset++) {
+            for (int length = 0; offset + length <= data.length; length++) {
+                int expected = 0;
+                for (int i = offset; i < offset + length; i++) expected += data[i] & 0xFF;
+                assertEquals("offset " + offset + " length " + length,
+                        expected, AdbCodec.checksum(data, offset, length));
+            }
+        }
+    }
+
+    @Test
+    public void readMessageFromStream() throws IOException {
+        byte[] payload = "host::features=shell_v2\0".getBytes();
+        byte[] wire = AdbProtocol.generateMessage(AdbProtocol.CMD_CNXN, AdbProtocol.CONNECT_VERSION,
+                AdbProtocol.CONNECT_MAXDATA, payload);
+        ByteBuffer header = ByteBuffer.allocate(AdbProtocol.ADB_HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        AdbProtocol.AdbMessage msg = new AdbProtocol.AdbMessage();
+
+        AdbCodec.readMessage(new ByteArrayInputStream(wire), header, msg);
+        assertEquals(AdbProtocol.CMD_CNXN, msg.command);
+        assertEquals(AdbProtocol.CONNECT_MAXDATA, msg.arg1);
+        assertArrayEquals(payload, Arrays.copyOf(msg.payload, msg.payloadLength));
+        assertTrue(AdbProtocol.validateMessage(msg, true));
+    }
+
+    @Test
+    public void readMessageRejectsOversizedPayload() {
+        ByteBuffer wire = ByteBuffer.allocate(AdbProtocol.ADB_HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        AdbCodec.encodeHeader(wire, AdbProtocol.CMD_WRTE, 1, 1, null, 0, AdbProtocol.CONNECT_MAXDATA + 1, false);
+        ByteBuffer header = ByteBuffer.allocate(AdbProtocol.ADB_HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            AdbCodec.readMessage(new ByteArrayInputStream(wire.array()), header, new AdbProtocol.AdbMessage());
+            fail("oversized payload accepted");
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.wsd.appfreeze.adb;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LineParserTest {
+
+    private final List<String> lines = new ArrayList<>();
+    private final LineParser parser = new LineParser(line -> lines.add(line.toString()));
+
+    @Test
+    public void splitsLinesAcrossChunks() throws IOException {
+        byte[] data = "第一行\r\nsecond line\nlast".getBytes(StandardCharsets.UTF_8);
+        // 逐字节喂入，多字节字符被切开
+        for (int i = 0; i < data.length; i++) parser.feed(data, i, 1);
+        assertEquals(Arrays.asList("第一行", "second line"), lines);
+
+        parser.finish();
+        assertEquals(Arrays.asList("第一行", "second line", "last"), lines);
+    }
+
+    @Test
+    public void growsForLongLines() throws IOException {
+        StringBuilder longLine = new StringBuilder();
+        for (int i = 0; i < 1000; i++) longLine.append("包名");
+        parser.parse(new ByteArrayInputStream((longLine + "\n\nx").getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Arrays.asList(longLine.toString(), "", "x"), lines);
+    }
+
+    @Test
+    public void fieldsSplitOnWhitespace() {
+        String line = "  2001 10057\t 81234  1.5 com.a";
+        int[] bounds = new int[6];
+        assertEquals(5, LineParser.fields(line, bounds));
+        assertEquals("2001", line.substring(bounds[0], bounds[1]));
+        assertEquals("10057", line.substring(bounds[2], bounds[3]));
+        assertEquals("81234", line.substring(bounds[4], bounds[5]));
+        assertEquals(0, LineParser.fields("   ", bounds));
+    }
+
+    @Test
+    public void parsesIntegers() {
+        assertEquals(1234, LineParser.parseInt("x1234y", 1, 5, -1));
+        assertEquals(-56, LineParser.parseInt("-56", 0, 3, 0));
+        assertEquals(-1, LineParser.parseInt("12a", 0, 3, -1));
+        assertEquals(-1, LineParser.parseInt("", 0, 0, -1));
+        assertEquals(-1, LineParser.parseInt("-", 0, 1, -1));
+        assertEquals(-1, LineParser.parseInt("9999999999", 0, 10, -1));
+        assertEquals(9999999999L, LineParser.parseLong("9999999999", 0, 10, -1));
+    }
+}
@@ -0,0 +1,73 @@
+package com.wsd.appfreeze.adb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ProcessSnapshotTest {
+
+    private static ProcessSnapshot parse(String... lines) {
+        ProcessSnapshot.Parser parser = new ProcessSnapshot.Parser();
+        for (String line : lines) parser.onLine(line);
+        return parser.build();
+    }
+
+    @Test
+    public void groupsProcessesByPackage() {
+        ProcessSnapshot snapshot = parse(
+                "  PID   UID     RSS %CPU NAME",
+                "  512  1000  204800  3.2 system_server",
+                " 2001 10057   81234  1.5 com.a",
+                " 2002 10057   20000  0.4 com.a:push",
+                " 2200 u0_a88  30000  0.0 com.b",
+                " 3100 1010123 50000 12.0 com.c");
+
+        assertEquals(3, snapshot.size());
+        assertNull("系统进程不计入", snapshot.get("system_server"));
+
+        ProcessSnapshot.App a = snapshot.get("com.a");
+        assertArrayEquals(new int[] { 2001, 2002 }, a.getPids());
+        assertEquals(101234, a.getRssKb());
+        assertEquals(1.9f, a.getCpuPercent(), 0.001f);
+
+        assertEquals(10088, snapshot.get("com.b").getUid());
+        assertEquals("其他用户下的应用", 1010123, snapshot.get("com.c").getUid());
+        assertTrue(snapshot.isRunning("com.c"));
+        assertFalse(snapshot.isRunning("com.d"));
+    }
+
+    @Test
+    public void countsActiveSocketsPerUid() {
+        ProcessSnapshot snapshot = parse(
+                " 2200 10088  30000  0.0 com.b",
+                "  sl  local_address rem_address   st tx_queue rx_queue tr tm->when retrnsmt   uid  timeout inode",
+                "   0: 0100007F:3CB3 00000000:0000 0A 00000000:00000000 00:00000000 00000000 10088        0 1 1",
+                "   1: 0100007F:A1B2 0100007F:01BB 01 00000000:00000000 00:00000000 00000000 10088        0 2 1",
+                "   2: 0100007F:A1B3 0100007F:01BB 01 00000000:00000000 00:00000000 00000000 10088        0 3 1",
+                "   3: 0100007F:A1B4 0100007F:01BB 01 00000000:00000000 00:00000000 00000000 10057        0 4 1");
+
+        ProcessSnapshot.App b = snapshot.get("com.b");
+        assertEquals("监听套接字不计入", 2, b.getSocketCount());
+        // 29MB + 0 CPU + 2 个套接字
+        assertEquals(30000 / 1024 + 2 * 10, b.getWeight());
+    }
+
+    @Test
+    public void parsesColumns() {
+        assertEquals(10088, ProcessSnapshot.parseUid("u0_a88", 0, 6));
+        assertEquals(1010123, ProcessSnapshot.parseUid("u10_a123", 0, 8));
+        assertEquals(1000, ProcessSnapshot.parseUid("1000", 0, 4));
+        assertEquals(-1, ProcessSnapshot.parseUid("system", 0, 6));
+
+        assertEquals(0x0A, ProcessSnapshot.parseHex("0A", 0, 2));
+        assertEquals(-1, ProcessSnapshot.parseHex("0G", 0, 2));
+
+        assertEquals(123, ProcessSnapshot.parseTenths("12.3", 0, 4));
+        assertEquals(70, ProcessSnapshot.parseTenths("7", 0, 1));
+        assertEquals(0, ProcessSnapshot.parseTenths("?", 0, 1));
+    }
+}
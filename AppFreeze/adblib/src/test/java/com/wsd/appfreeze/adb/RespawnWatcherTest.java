@@ -0,0 +1,33 @@
+package com.wsd.appfreeze.adb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class RespawnWatcherTest {
+
+    @Test
+    public void parsesProcessStartWithUserField() {
+        RespawnWatcher.ProcessStart event = RespawnWatcher.parseProcessStart(
+                "I/am_proc_start(  812): [0,4321,10057,com.a,service,{com.a/com.a.PushService}]");
+        assertEquals("com.a", event.packageName);
+        assertEquals(4321, event.pid);
+    }
+
+    /** 旧版本没有 user 字段；子进程名去掉 ':' 后缀 */
+    @Test
+    public void parsesProcessStartWithoutUserField() {
+        RespawnWatcher.ProcessStart event = RespawnWatcher.parseProcessStart(
+                "I/am_proc_start(  812): [4321,10057,com.a:push,broadcast,com.a/.Receiver]");
+        assertEquals("com.a", event.packageName);
+        assertEquals(4321, event.pid);
+    }
+
+    @Test
+    public void ignoresOtherEvents() {
+        assertNull(RespawnWatcher.parseProcessStart("I/am_proc_died(  812): [0,4321,com.a,900,2]"));
+        assertNull(RespawnWatcher.parseProcessStart("--------- beginning of events"));
+        assertNull(RespawnWatcher.parseProcessStart("I/am_proc_start(  812): [0,4321,10057]"));
+    }
+}
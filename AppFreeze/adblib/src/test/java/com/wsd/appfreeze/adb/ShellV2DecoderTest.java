@@ -0,0 +1,95 @@
+package com.wsd.appfreeze.adb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class ShellV2DecoderTest {
+
+    /** 记录解码结果 */
+    private static final class Recorder implements ShellV2Decoder.Sink {
+        final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        final ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        int exitCode = -1;
+        int exits;
+
+        @Override
+        public void onStdout(byte[] data, int offset, int length) {
+            stdout.write(data, offset, length);
+        }
+
+        @Override
+        public void onStderr(byte[] data, int offset, int length) {
+            stderr.write(data, offset, length);
+        }
+
+        @Override
+        public void onExit(int exitCode) {
+            this.exitCode = exitCode;
+            exits++;
+        }
+    }
+
+    private static void packet(ByteArrayOutputStream out, int id, byte[] data) {
+        out.write(id);
+        out.write(data.length);
+        out.write(data.length >> 8);
+        out.write(data.length >> 16);
+        out.write(data.length >> 24);
+        out.write(data, 0, data.length);
+    }
+
+    private static byte[] sampleStream() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        packet(out, ShellV2Decoder.ID_STDOUT, "hello ".getBytes(StandardCharsets.UTF_8));
+        packet(out, ShellV2Decoder.ID_WINDOW_SIZE_CHANGE, new byte[] { 1, 2, 3, 4 });
+        packet(out, ShellV2Decoder.ID_STDERR, "oops".getBytes(StandardCharsets.UTF_8));
+        packet(out, ShellV2Decoder.ID_STDOUT, "world".getBytes(StandardCharsets.UTF_8));
+        packet(out, ShellV2Decoder.ID_EXIT, new byte[] { (byte) 255 });
+        return out.toByteArray();
+    }
+
+    @Test
+    public void decodesWholeStream() throws IOException {
+        Recorder recorder = new Recorder();
+        ShellV2Decoder decoder = new ShellV2Decoder(recorder);
+        byte[] data = sampleStream();
+        decoder.feed(data, 0, data.length);
+
+        assertEquals("hello world", recorder.stdout.toString("UTF-8"));
+        assertEquals("oops", recorder.stderr.toString("UTF-8"));
+        assertEquals(255, recorder.exitCode);
+        assertTrue(decoder.hasExited());
+    }
+
+    /** 包头和负载跨越任意报文边界 */
+    @Test
+    public void decodesByteByByte() throws IOException {
+        Recorder recorder = new Recorder();
+        ShellV2Decoder decoder = new ShellV2Decoder(recorder);
+        byte[] data = sampleStream();
+        for (int i = 0; i < data.length; i++) decoder.feed(data, i, 1);
+
+        assertEquals("hello world", recorder.stdout.toString("UTF-8"));
+        assertEquals("oops", recorder.stderr.toString("UTF-8"));
+        assertEquals(255, recorder.exitCode);
+        assertEquals(1, recorder.exits);
+    }
+
+    @Test
+    public void rejectsNegativeLength() {
+        ShellV2Decoder decoder = new ShellV2Decoder(new Recorder());
+        byte[] data = { ShellV2Decoder.ID_STDOUT, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF };
+        try {
+            decoder.feed(data, 0, data.length);
+            fail("negative packet length accepted");
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -20,6 +20,7 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.wsd.appfreeze.adapter.AppListAdapter;
+import com.wsd.appfreeze.adb.AdbShellHelper;
 import com.wsd.appfreeze.model.AppInfo;
 import com.wsd.appfreeze.service.AppFreezeService;
 import com.wsd.appfreeze.util.FreezeConfig;
@@ -63,6 +64,8 @@ public class MainActivity extends FragmentActivity {
         setContentView(R.layout.activity_main);
 
         freezeConfig = new FreezeConfig(this);
+        // 首次安装后立即在后台生成 ADB 密钥，连接检测等待同一个结果
+        AdbShellHelper.preloadKeys(this);
 
         initViews();
         setupListeners();
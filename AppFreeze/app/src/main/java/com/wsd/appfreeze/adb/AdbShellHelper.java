@@ -1,53 +1,136 @@
 package com.wsd.appfreeze.adb;
 
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
 import android.util.Base64;
 import android.util.Log;
 
 import java.io.File;
-import java.net.Socket;
 import java.security.NoSuchAlgorithmException;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * ADB Shell 命令执行助手
+ * ADB Shell 命令执行助手（AdbClient 的 Android 适配层）
  *
  * 核心原理：
  * 索尼电视开启无线调试后，adbd 守护进程监听在 localhost:5555。
+ * adbd 换了端口时由 AdbEndpointDiscovery 探测，上次可用的端口持久化，下次直接连接。
  * 本类通过 TCP socket 连接本机 adbd，完成 RSA 认证后，
- * 以 shell 身份执行 am force-stop 命令，彻底终止目标应用。
+ * 以 shell 身份执行 force-stop 命令，彻底终止目标应用。
+ * 优先使用 cmd activity force-stop（binder 直连），设备不支持时回退到 am force-stop，
+ * 探测结果按设备指纹（Build.FINGERPRINT）缓存。
  *
  * ADB shell 拥有 FORCE_STOP_PACKAGES 权限，这是 Android 系统设计如此，
  * 不需要 root，不需要系统签名，不需要 Device Owner。
  *
  * 首次连接时需要用户在电视上确认 ADB 授权弹窗（勾选"始终允许"后不再弹出）。
+ * 授权弹窗只在允许交互授权时（用户正在使用应用）触发，后台使用时未授权立即失败；
+ * 授权状态按公钥指纹持久化，已知未授权时不再发起握手，换了密钥不沿用旧状态。
+ *
+ * 协议、连接管理和执行逻辑都在纯 Java 模块 adblib 的 AdbClient 中，
+ * 本类只提供 Android 相关的部分：RSA 密钥由进程内共享的后台任务从应用私有目录加载
+ * （首次运行时生成），创建本类不会阻塞调用线程；探测结果、端点和授权状态保存在
+ * SharedPreferences；日志输出到 Logcat。
  */
-public class AdbShellHelper {
+public class AdbShellHelper extends AdbClient {
 
     private static final String TAG = "AdbShellHelper";
     private static final String ADB_HOST = "127.0.0.1";
-    private static final int ADB_PORT = 5555;
-    private static final int CONNECT_TIMEOUT = 5000;
+    private static final String PREFS_NAME = "adb_capabilities";
+
+    /** 进程内共享的密钥加载任务：所有实例等待同一个结果，密钥只加载或生成一次 */
+    private static CompletableFuture<AdbCrypto> sharedKeys;
+
+    /** 输出到 Logcat */
+    private static final Logger LOG = new Logger() {
+        @Override
+        public void d(String message) {
+            Log.d(TAG, message);
+        }
 
-    private final Context context;
-    private AdbCrypto crypto;
+        @Override
+        public void i(String message) {
+            Log.i(TAG, message);
+        }
+
+        @Override
+        public void w(String message) {
+            Log.w(TAG, message);
+        }
 
+        @Override
+        public void e(String message) {
+            Log.e(TAG, message);
+        }
+    };
+
+    /**
+     * 创建助手，不阻塞调用线程
+     * 密钥在后台线程加载（首次运行时生成），就绪前调用的操作在各自的截止时间内等待。
+     */
     public AdbShellHelper(Context context) {
-        this.context = context;
-        initCrypto();
+        super(ADB_HOST, Build.FINGERPRINT, loadKeys(context), prefsSettings(context), LOG);
     }
 
     /**
-     * 初始化 RSA 密钥对
+     * 在后台预先加载或生成 ADB 密钥（开机、应用启动时调用）
+     * 首次运行生成 2048 位 RSA 密钥在电视芯片上需要数秒，提前完成可避免界面检测或待机处理等待。
+     */
+    public static void preloadKeys(Context context) {
+        loadKeys(context);
+    }
+
+    /** 以 SharedPreferences 作为 AdbClient 的持久化存储 */
+    private static Settings prefsSettings(Context context) {
+        SharedPreferences prefs = context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        return new Settings() {
+            @Override
+            public String getString(String key) {
+                return prefs.getString(key, null);
+            }
+
+            @Override
+            public void putString(String key, String value) {
+                prefs.edit().putString(key, value).apply();
+            }
+
+            @Override
+            public void remove(String key) {
+                prefs.edit().remove(key).apply();
+            }
+        };
+    }
+
+    /** 获取共享的密钥加载任务，尚未开始或上次失败时在后台线程重新加载 */
+    private static synchronized CompletableFuture<AdbCrypto> loadKeys(Context context) {
+        CompletableFuture<AdbCrypto> future = sharedKeys;
+        if (future != null && !(future.isDone() && future.getNow(null) == null)) return future;
+
+        CompletableFuture<AdbCrypto> created = new CompletableFuture<>();
+        Context appContext = context.getApplicationContext();
+        Thread loader = new Thread(() -> created.complete(initCrypto(appContext)), "AdbKeyLoader");
+        loader.setDaemon(true);
+        loader.start();
+        sharedKeys = created;
+        return created;
+    }
+
+    /**
+     * 初始化 RSA 密钥对（在后台线程执行）
      * 首次运行时生成新密钥对并保存到应用私有目录，
-     * 后续运行直接加载已有密钥。
+     * 后续运行直接加载已有密钥。加载后预先初始化签名 Cipher 和 ADB 格式公钥。
+     *
+     * @return 密钥，失败时返回 null
      */
-    private void initCrypto() {
+    private static AdbCrypto initCrypto(Context context) {
         File privateKeyFile = new File(context.getFilesDir(), "adb_key");
         File publicKeyFile = new File(context.getFilesDir(), "adb_key.pub");
 
         AdbBase64 base64 = data -> Base64.encodeToString(data, Base64.NO_WRAP);
 
+        AdbCrypto crypto = null;
         try {
             if (privateKeyFile.exists() && publicKeyFile.exists()) {
                 // 加载已有密钥对
@@ -61,115 +144,20 @@ public class AdbShellHelper {
             }
         } catch (Exception e) {
             Log.e(TAG, "初始化 ADB 密钥失败: " + e.getMessage());
+            // 临时密钥只用于本次运行，授权状态按公钥指纹保存，不会影响已保存的密钥
             try {
                 crypto = AdbCrypto.generateAdbKeyPair(base64);
             } catch (NoSuchAlgorithmException ex) {
                 Log.e(TAG, "生成密钥对失败: " + ex.getMessage());
+                return null;
             }
         }
-    }
-
-    /**
-     * 通过 ADB shell 批量强制停止应用
-     *
-     * @param packageNames 待停止的应用包名集合
-     * @return 成功停止的应用数量
-     */
-    public int forceStopApps(Set<String> packageNames) {
-        if (crypto == null) {
-            Log.e(TAG, "ADB 密钥未初始化");
-            return 0;
-        }
-
-        AdbConnection connection = null;
-        int count = 0;
-
         try {
-            // 连接本机 adbd
-            Socket socket = new Socket();
-            socket.connect(new java.net.InetSocketAddress(ADB_HOST, ADB_PORT), CONNECT_TIMEOUT);
-            connection = AdbConnection.create(socket, crypto);
-            connection.connect();
-            Log.i(TAG, "已连接到本机 adbd (localhost:" + ADB_PORT + ")");
-
-            // 逐个执行 am force-stop
-            for (String packageName : packageNames) {
-                try {
-                    AdbStream stream = connection.open("shell:am force-stop " + packageName);
-
-                    // 读取命令输出（等待命令执行完成）
-                    try {
-                        byte[] response = stream.read();
-                        if (response != null) {
-                            String output = new String(response).trim();
-                            if (!output.isEmpty()) {
-                                Log.d(TAG, "命令输出 [" + packageName + "]: " + output);
-                            }
-                        }
-                    } catch (Exception e) {
-                        // 流关闭表示命令执行完成，这是正常的
-                    }
-
-                    stream.close();
-                    count++;
-                    Log.i(TAG, "已强制停止: " + packageName);
-                } catch (Exception e) {
-                    Log.w(TAG, "强制停止失败: " + packageName + " - " + e.getMessage());
-                }
-            }
-
+            crypto.warmUp();
         } catch (Exception e) {
-            Log.e(TAG, "ADB 连接失败: " + e.getMessage()
-                    + "（请确保电视已开启无线调试，且已授权本应用的 ADB 连接）");
-        } finally {
-            if (connection != null) {
-                try {
-                    connection.close();
-                } catch (Exception e) {
-                    Log.w(TAG, "关闭 ADB 连接异常: " + e.getMessage());
-                }
-            }
-        }
-
-        return count;
-    }
-
-    /**
-     * 测试 ADB 连接是否可用
-     *
-     * @return true 表示可以成功连接并执行命令
-     */
-    public boolean testConnection() {
-        if (crypto == null) return false;
-
-        AdbConnection connection = null;
-        try {
-            Socket socket = new Socket();
-            socket.connect(new java.net.InetSocketAddress(ADB_HOST, ADB_PORT), CONNECT_TIMEOUT);
-            connection = AdbConnection.create(socket, crypto);
-            connection.connect();
-
-            // 执行一个简单的测试命令
-            AdbStream stream = connection.open("shell:echo adb_ok");
-            try {
-                byte[] response = stream.read();
-                if (response != null) {
-                    String output = new String(response).trim();
-                    Log.i(TAG, "ADB 连接测试成功: " + output);
-                    return output.contains("adb_ok");
-                }
-            } catch (Exception e) {
-                // 流关闭也算成功
-            }
-            stream.close();
-            return true;
-        } catch (Exception e) {
-            Log.w(TAG, "ADB 连接测试失败: " + e.getMessage());
-            return false;
-        } finally {
-            if (connection != null) {
-                try { connection.close(); } catch (Exception e) { }
-            }
+            // 握手时会再次尝试初始化
+            Log.w(TAG, "预先初始化签名失败: " + e.getMessage());
         }
+        return crypto;
     }
 }
@@ -6,12 +6,14 @@ import android.content.Intent;
 import android.os.Build;
 import android.util.Log;
 
+import com.wsd.appfreeze.adb.AdbShellHelper;
 import com.wsd.appfreeze.service.AppFreezeService;
 
 /**
  * 开机自启动广播接收器
  * 监听系统启动完成事件，自动启动 AppFreezeService 前台服务。
  * 确保电视每次开机后，应用冻结功能自动生效，无需用户手动打开应用。
+ * 应用更新安装后同样重新启动服务；两种情况下都先在后台预先加载 ADB 密钥。
  */
 public class BootReceiver extends BroadcastReceiver {
 
@@ -19,10 +21,16 @@ public class BootReceiver extends BroadcastReceiver {
 
     @Override
     public void onReceive(Context context, Intent intent) {
-        if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
+        String action = intent.getAction();
+        if (Intent.ACTION_BOOT_COMPLETED.equals(action)) {
             Log.i(TAG, "系统启动完成，正在启动 AppFreezeService...");
-            startAppFreezeService(context);
+        } else if (Intent.ACTION_MY_PACKAGE_REPLACED.equals(action)) {
+            Log.i(TAG, "应用已更新，正在重新启动 AppFreezeService...");
+        } else {
+            return;
         }
+        AdbShellHelper.preloadKeys(context);
+        startAppFreezeService(context);
     }
 
     /**
@@ -5,40 +5,69 @@ import android.content.Context;
 import android.content.Intent;
 import android.util.Log;
 
-import java.util.Set;
+import java.util.concurrent.Executor;
 
+import com.wsd.appfreeze.service.RespawnSweeper;
 import com.wsd.appfreeze.util.AppKiller;
-import com.wsd.appfreeze.util.FreezeConfig;
 
 /**
  * 屏幕关闭广播接收器（电视待机）
  *
  * 当索尼电视遥控器按下关机键时，系统进入待机模式，发送 ACTION_SCREEN_OFF 广播。
  * 本接收器通过内嵌 ADB 客户端执行 am force-stop 命令，彻底终止用户配置的应用。
+ * AppKiller 由 AppFreezeService 注入，复用服务持有的 ADB 长连接和预先准备的待关闭列表；
+ * 执行线程也由服务预先启动，收到广播后不读取配置、不创建线程，直接投递任务。
+ * 停止完成后开始监视被重新拉起的应用，直到亮屏（ACTION_SCREEN_ON）；
+ * 监视流打不开或事件日志不可用时才启动轮询兜底。
  */
 public class ScreenOffReceiver extends BroadcastReceiver {
 
     private static final String TAG = "ScreenOffReceiver";
 
+    private final AppKiller killer;
+    private final Executor executor;
+    private final RespawnSweeper sweeper;
+    /** 是否处于待机，防止亮屏后才执行完的待机任务再开始监视 */
+    private volatile boolean standby;
+
+    public ScreenOffReceiver(AppKiller killer, Executor executor, RespawnSweeper sweeper) {
+        this.killer = killer;
+        this.executor = executor;
+        this.sweeper = sweeper;
+    }
+
     @Override
     public void onReceive(Context context, Intent intent) {
         if (Intent.ACTION_SCREEN_OFF.equals(intent.getAction())) {
             Log.i(TAG, "检测到屏幕关闭（电视待机），开始强制停止用户配置的应用...");
+            standby = true;
 
-            FreezeConfig config = new FreezeConfig(context);
-            Set<String> killList = config.getKillList();
-
-            if (killList.isEmpty()) {
-                Log.i(TAG, "待关闭应用列表为空，无需处理");
-                return;
-            }
-
-            // 在新线程中执行，避免阻塞广播接收器（ADB 连接需要网络IO）
-            new Thread(() -> {
-                AppKiller killer = new AppKiller(context);
-                int count = killer.killApps(killList);
-                Log.i(TAG, "清理完成，共强制停止 " + count + " / " + killList.size() + " 个应用");
-            }).start();
+            // 在后台线程中执行，避免阻塞广播接收器（ADB 连接需要网络IO）
+            executor.execute(() -> {
+                int count = killer.killPrepared();
+                Log.i(TAG, "清理完成，共强制停止 " + count + " 个应用");
+                if (standby) killer.startRespawnWatcher(this::onWatcherUnavailable);
+                // 监视开始前恰好亮屏
+                if (!standby) {
+                    killer.stopRespawnWatcher();
+                    sweeper.stop();
+                }
+            });
+        } else if (Intent.ACTION_SCREEN_ON.equals(intent.getAction())) {
+            standby = false;
+            Log.i(TAG, "检测到屏幕点亮，停止监视");
+            // 关闭监视流需要向 adbd 发送 CLSE，同样交给执行线程；单线程按顺序执行，不会早于尚未完成的待机任务
+            executor.execute(() -> {
+                killer.stopRespawnWatcher();
+                sweeper.stop();
+            });
         }
     }
+
+    /** 监视无法工作时改用轮询，可能在连接读线程上回调，交给执行线程 */
+    private void onWatcherUnavailable() {
+        executor.execute(() -> {
+            if (standby) sweeper.start();
+        });
+    }
 }
@@ -13,13 +13,26 @@ import android.util.Log;
 import androidx.annotation.Nullable;
 
 import com.wsd.appfreeze.R;
+import com.wsd.appfreeze.adb.AdbShellHelper;
 import com.wsd.appfreeze.receiver.ScreenOffReceiver;
+import com.wsd.appfreeze.util.AppKiller;
+import com.wsd.appfreeze.util.FreezeConfig;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 前台服务 - 持续监听电视待机事件
  *
  * 动态注册 ScreenOffReceiver 监听 ACTION_SCREEN_OFF 广播。
  * 当电视待机时，通过内嵌 ADB 客户端执行 am force-stop 命令关闭应用。
+ * 服务在整个生命周期内持有一条已认证的 ADB 长连接（保活 + 自动重连），
+ * 待机时无需重新进行 TCP 连接和 RSA 握手。
+ * 待关闭列表在启动和配置变化时预先准备为已编码的命令，执行线程常驻，
+ * 待机时从收到广播到向 adbd 发出第一个字节之间没有文件读取和字符串拼接。
+ * 待机期间在同一条长连接上监视进程启动事件，被重新拉起的应用立即再次停止，亮屏后停止监视；
+ * 事件日志不可用的设备由 RespawnSweeper 按自适应间隔轮询兜底。
  */
 public class AppFreezeService extends Service {
 
@@ -27,6 +40,10 @@ public class AppFreezeService extends Service {
     private static final String CHANNEL_ID = "app_freeze_channel";
     private static final int NOTIFICATION_ID = 1001;
 
+    private AdbShellHelper adbHelper;
+    private FreezeConfig freezeConfig;
+    private ThreadPoolExecutor killExecutor;
+    private RespawnSweeper respawnSweeper;
     private ScreenOffReceiver screenOffReceiver;
 
     @Override
@@ -34,10 +51,30 @@ public class AppFreezeService extends Service {
         super.onCreate();
         Log.i(TAG, "AppFreezeService 已创建");
 
-        screenOffReceiver = new ScreenOffReceiver();
+        adbHelper = new AdbShellHelper(this);
+        adbHelper.start();
+        Log.i(TAG, "已启动 ADB 长连接");
+
+        // 预先准备待关闭列表，列表变化时重新准备；待机时不再读取配置
+        AppKiller killer = new AppKiller(this, adbHelper);
+        freezeConfig = new FreezeConfig(this);
+        Log.i(TAG, "已准备待关闭应用列表，共 " + killer.prepare(freezeConfig.getKillList()) + " 个应用");
+        freezeConfig.setOnKillListChangedListener(() -> {
+            int count = killer.prepare(freezeConfig.getKillList());
+            Log.i(TAG, "待关闭应用列表已更新，共 " + count + " 个应用");
+        });
+
+        // 执行线程预先启动并常驻，待机时直接投递任务
+        killExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> new Thread(r, "AppFreezeKiller"));
+        killExecutor.prestartCoreThread();
+
+        respawnSweeper = new RespawnSweeper(this, killer, killExecutor);
+        screenOffReceiver = new ScreenOffReceiver(killer, killExecutor, respawnSweeper);
         IntentFilter filter = new IntentFilter(Intent.ACTION_SCREEN_OFF);
+        filter.addAction(Intent.ACTION_SCREEN_ON);
         registerReceiver(screenOffReceiver, filter);
-        Log.i(TAG, "已注册屏幕关闭广播监听");
+        Log.i(TAG, "已注册屏幕关闭/点亮广播监听");
     }
 
     @Override
@@ -55,6 +92,22 @@ public class AppFreezeService extends Service {
             unregisterReceiver(screenOffReceiver);
             screenOffReceiver = null;
         }
+        if (respawnSweeper != null) {
+            respawnSweeper.stop();
+            respawnSweeper = null;
+        }
+        if (freezeConfig != null) {
+            freezeConfig.setOnKillListChangedListener(null);
+            freezeConfig = null;
+        }
+        if (killExecutor != null) {
+            killExecutor.shutdown();
+            killExecutor = null;
+        }
+        if (adbHelper != null) {
+            adbHelper.close();
+            adbHelper = null;
+        }
         Log.i(TAG, "AppFreezeService 已销毁");
     }
 
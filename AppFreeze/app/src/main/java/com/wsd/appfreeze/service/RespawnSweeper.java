@@ -0,0 +1,91 @@
+package com.wsd.appfreeze.service;
+
+import android.app.AlarmManager;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.wsd.appfreeze.adb.BackoffInterval;
+import com.wsd.appfreeze.util.AppKiller;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 待机期间的轮询清理（事件日志不可用时的兜底）
+ *
+ * 部分电视固件限制 shell 读取 logcat，RespawnWatcher 收不到进程启动事件。
+ * 监视流打不开或打开后立即关闭时才启动本类（事件监视正常工作时不轮询），
+ * 在待机期间定时通过已建立的 ADB 长连接抓取一次进程快照，重新停止被拉起的待关闭应用。
+ * 间隔自适应：没有发现或轮询失败（长连接不可用）时按指数退避（30 秒起，最长 30 分钟），
+ * 发现时立即收紧到下限。整夜连不上 adbd 时轮询很快退避到上限，
+ * 不会每 30 秒唤醒一次设备；连接由连接管理器自行重连，轮询不为此建立连接。
+ *
+ * 定时使用 AlarmManager（ELAPSED_REALTIME_WAKEUP），待机休眠时也能按时唤醒；
+ * 唤醒锁只在每次轮询期间持有（一次 ps 往返），带超时，轮询结束立即释放。
+ */
+public class RespawnSweeper {
+
+    private static final String TAG = "RespawnSweeper";
+    private static final String ALARM_TAG = "AppFreeze:sweep";
+    private static final long MIN_INTERVAL_MS = 30_000;
+    private static final long MAX_INTERVAL_MS = 30 * 60_000;
+    /** 唤醒锁的超时，轮询异常卡住时也会自动释放 */
+    private static final long WAKE_LOCK_TIMEOUT_MS = 5_000;
+
+    private final AlarmManager alarmManager;
+    private final PowerManager.WakeLock wakeLock;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final AppKiller killer;
+    private final Executor executor;
+    private final BackoffInterval interval = new BackoffInterval(MIN_INTERVAL_MS, MAX_INTERVAL_MS);
+    private final AlarmManager.OnAlarmListener alarm = this::onAlarm;
+    private volatile boolean running;
+
+    public RespawnSweeper(Context context, AppKiller killer, Executor executor) {
+        this.alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        this.wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, ALARM_TAG);
+        this.wakeLock.setReferenceCounted(false);
+        this.killer = killer;
+        this.executor = executor;
+    }
+
+    /** 开始轮询（监视无法工作时调用），从最短间隔开始；已在轮询时不重复开始 */
+    public void start() {
+        if (running) return;
+        running = true;
+        schedule(interval.reset());
+        Log.i(TAG, "已开始待机轮询");
+    }
+
+    /** 停止轮询（亮屏时调用） */
+    public void stop() {
+        running = false;
+        alarmManager.cancel(alarm);
+    }
+
+    private void schedule(long delayMs) {
+        alarmManager.set(AlarmManager.ELAPSED_REALTIME_WAKEUP, SystemClock.elapsedRealtime() + delayMs,
+                ALARM_TAG, alarm, handler);
+    }
+
+    /** 闹钟在主线程回调：持有唤醒锁，把轮询交给执行线程 */
+    private void onAlarm() {
+        if (!running) return;
+        wakeLock.acquire(WAKE_LOCK_TIMEOUT_MS);
+        executor.execute(() -> {
+            try {
+                if (!running) return;
+                int found = killer.sweep();
+                long next = interval.next(found);
+                if (running) schedule(next);
+                Log.d(TAG, "轮询完成，发现 " + found + " 个，下次间隔 " + next / 1000 + " 秒");
+            } finally {
+                if (wakeLock.isHeld()) wakeLock.release();
+            }
+        });
+    }
+}
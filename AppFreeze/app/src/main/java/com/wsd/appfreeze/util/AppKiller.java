@@ -5,7 +5,11 @@ import android.content.Context;
 import android.util.Log;
 
 import com.wsd.appfreeze.adb.AdbShellHelper;
+import com.wsd.appfreeze.adb.KillPlan;
+import com.wsd.appfreeze.adb.KillReport;
+import com.wsd.appfreeze.adb.ProcessSnapshot;
 
+import java.util.Collection;
 import java.util.Set;
 
 /**
@@ -29,11 +33,74 @@ public class AppKiller {
     private final ActivityManager am;
 
     public AppKiller(Context context) {
+        this(context, new AdbShellHelper(context));
+    }
+
+    /**
+     * 使用外部持有的 AdbShellHelper（例如常驻服务中保持长连接的实例）
+     */
+    public AppKiller(Context context, AdbShellHelper adbHelper) {
         this.context = context;
-        this.adbHelper = new AdbShellHelper(context);
+        this.adbHelper = adbHelper;
         this.am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
     }
 
+    /**
+     * 预先准备待关闭列表（常驻服务在启动和配置变化时调用）
+     *
+     * @param packageNames 待关闭的应用包名集合
+     * @return 准备好的应用数量（已过滤非法包名）
+     */
+    public int prepare(Set<String> packageNames) {
+        return adbHelper.prepareKillPlan(packageNames).size();
+    }
+
+    /**
+     * 按预先准备的列表批量强制停止应用，不读取配置
+     *
+     * @return 成功处理的数量
+     */
+    public int killPrepared() {
+        KillPlan plan = adbHelper.getKillPlan();
+        if (plan == null || plan.isEmpty()) {
+            Log.i(TAG, "待关闭应用列表为空");
+            return 0;
+        }
+
+        Log.i(TAG, "开始关闭 " + plan.size() + " 个应用...");
+
+        int count = adbHelper.forceStopApps(plan);
+        if (count > 0) {
+            Log.i(TAG, "ADB shell 方案成功，共强制停止 " + count + " / " + plan.size() + " 个应用");
+            logReport();
+            return count;
+        }
+        return killBackgroundProcesses(plan.getPackages());
+    }
+
+    /**
+     * 待机期间监视预先准备的列表中的应用，被重新拉起时立即停止（待机处理完成后调用）
+     *
+     * @param fallback 监视无法工作（打开失败或事件日志不可用）时的兜底，可能在连接读线程上执行
+     */
+    public void startRespawnWatcher(Runnable fallback) {
+        if (adbHelper.startRespawnWatcher(fallback)) Log.i(TAG, "已开始监视待关闭应用的重启");
+    }
+
+    /** 停止重启监视（亮屏时调用） */
+    public void stopRespawnWatcher() {
+        adbHelper.stopRespawnWatcher();
+    }
+
+    /**
+     * 轮询一次，重新停止预先准备的列表中正在运行的应用
+     *
+     * @return 发现正在运行的应用数量，ADB 不可用时返回 -1
+     */
+    public int sweep() {
+        return adbHelper.sweepRespawned();
+    }
+
     /**
      * 批量强制停止应用
      *
@@ -53,12 +120,37 @@ public class AppKiller {
 
         if (count > 0) {
             Log.i(TAG, "ADB shell 方案成功，共强制停止 " + count + " / " + packageNames.size() + " 个应用");
+            logReport();
             return count;
         }
 
-        // ADB 连接失败，降级使用 killBackgroundProcesses
+        return killBackgroundProcesses(packageNames);
+    }
+
+    /** 按本轮的结果和停止前的进程快照，统计已停止的应用释放的内存和仍在运行的应用 */
+    private void logReport() {
+        KillReport report = adbHelper.getLastReport();
+        ProcessSnapshot snapshot = adbHelper.getLastSnapshot();
+        if (report == null || snapshot == null) return;
+        int stopped = 0;
+        long rssKb = 0;
+        for (KillReport.Outcome outcome : report.getOutcomes()) {
+            if (outcome.getStatus() != KillReport.Status.STOPPED) continue;
+            ProcessSnapshot.App app = snapshot.get(outcome.getPackageName());
+            if (app == null) continue;
+            stopped++;
+            rssKb += app.getRssKb();
+        }
+        Log.i(TAG, "其中 " + stopped + " 个运行中的应用已停止，约释放 " + rssKb / 1024 + "MB 内存"
+                + (report.isVerified() ? "" : "（未验证）"));
+        int alive = report.count(KillReport.Status.SURVIVED) + report.count(KillReport.Status.RESPAWNED);
+        if (alive > 0) Log.w(TAG, alive + " 个应用停止后仍在运行");
+    }
+
+    /** ADB 连接失败，降级使用 killBackgroundProcesses */
+    private int killBackgroundProcesses(Collection<String> packageNames) {
         Log.w(TAG, "ADB shell 方案失败，降级使用 killBackgroundProcesses");
-        count = 0;
+        int count = 0;
         for (String packageName : packageNames) {
             try {
                 if (am != null) {
@@ -11,7 +11,8 @@ import java.util.Set;
 /**
  * 冻结配置管理工具类
  * 使用 SharedPreferences 持久化存储用户选择的待关闭应用包名列表。
- * 每次电视待机时，ScreenOffReceiver 读取此配置，只关闭用户明确选择的应用。
+ * 常驻服务在启动和列表变化时读取此配置并预先准备 force-stop 计划，
+ * 电视待机时只关闭用户明确选择的应用（及预置黑名单）。
  */
 public class FreezeConfig {
 
@@ -26,6 +27,8 @@ public class FreezeConfig {
     ));
 
     private final SharedPreferences prefs;
+    /** SharedPreferences 只弱引用监听器，需由本对象持有 */
+    private SharedPreferences.OnSharedPreferenceChangeListener changeListener;
 
     public FreezeConfig(Context context) {
         prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
@@ -53,6 +56,23 @@ public class FreezeConfig {
         return list;
     }
 
+    /**
+     * 设置待关闭列表变化的回调（在主线程回调），传入 null 取消
+     * 同一进程内任何 FreezeConfig 实例保存列表都会触发，常驻服务据此重新准备 force-stop 计划。
+     */
+    public void setOnKillListChangedListener(Runnable listener) {
+        if (changeListener != null) {
+            prefs.unregisterOnSharedPreferenceChangeListener(changeListener);
+            changeListener = null;
+        }
+        if (listener != null) {
+            changeListener = (sharedPreferences, key) -> {
+                if (KEY_KILL_LIST.equals(key)) listener.run();
+            };
+            prefs.registerOnSharedPreferenceChangeListener(changeListener);
+        }
+    }
+
     /**
      * 检查指定包名是否在待关闭列表中
      *
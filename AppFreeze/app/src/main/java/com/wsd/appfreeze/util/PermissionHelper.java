@@ -8,6 +8,7 @@ import com.wsd.appfreeze.adb.AdbShellHelper;
 /**
  * 权限/连接状态检测工具类
  * 检测应用是否能通过 ADB 连接本机 adbd 执行 shell 命令。
+ * 检测由界面发起，允许交互授权：本端密钥未授权时会在电视上弹出授权对话框。
  */
 public class PermissionHelper {
 
@@ -21,14 +22,19 @@ public class PermissionHelper {
      * @return true 表示 ADB 连接可用，可以强制停止应用
      */
     public static boolean isAdbAvailable(Context context) {
+        AdbShellHelper helper = null;
         try {
-            AdbShellHelper helper = new AdbShellHelper(context);
+            helper = new AdbShellHelper(context);
+            // 用户正在使用应用，可以确认电视上的授权弹窗
+            helper.setInteractiveAuth(true);
             boolean result = helper.testConnection();
             Log.i(TAG, "ADB 连接状态: " + (result ? "可用" : "不可用"));
             return result;
         } catch (Exception e) {
             Log.e(TAG, "ADB 连接检测异常: " + e.getMessage());
             return false;
+        } finally {
+            if (helper != null) helper.close();
         }
     }
 }